@@ -0,0 +1,111 @@
+/*******************************************************************************
+ * The MIT License
+ *
+ * Copyright (c) 2018 knokko
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *  
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *******************************************************************************/
+package nl.knokko.gui.render;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import nl.knokko.gui.color.GuiColor;
+import nl.knokko.gui.color.SimpleGuiColor;
+import nl.knokko.gui.texture.GuiTexture;
+import nl.knokko.gui.texture.loader.SoftwareGuiTextureLoader;
+
+/**
+ * Measures the cost of recording render commands and submitting them. The SoftwareGuiRenderer is used as
+ * backend, so this runs without GPU. The tiny framebuffer keeps the rasterization cost low, so that mostly
+ * the recording and submission overhead is measured. The raster benchmark uses a realistic framebuffer.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class RenderCommandBenchmark {
+	
+	@Param({"100", "1000"})
+	public int commands;
+	
+	private SoftwareGuiRenderer tinyRenderer;
+	private SoftwareGuiRenderer rasterRenderer;
+	private GuiTexture texture;
+	private GuiColor color;
+	
+	@Setup
+	public void setup() {
+		SoftwareGuiTextureLoader loader = new SoftwareGuiTextureLoader();
+		tinyRenderer = new SoftwareGuiRenderer(loader, 4, 4);
+		rasterRenderer = new SoftwareGuiRenderer(loader, 800, 600);
+		BufferedImage image = new BufferedImage(32, 32, BufferedImage.TYPE_INT_ARGB);
+		for (int y = 0; y < 32; y++)
+			for (int x = 0; x < 32; x++)
+				image.setRGB(x, y, 0x80000000 | x << 19 | y << 11);
+		texture = loader.loadTexture(image);
+		color = new SimpleGuiColor(200, 100, 50, 128);
+	}
+	
+	private void record(GuiRenderer renderer) {
+		for (int index = 0; index < commands; index++) {
+			float minX = (index % 20) * 0.05f;
+			float minY = ((index / 20) % 20) * 0.05f;
+			if (index % 2 == 0)
+				renderer.renderTexture(texture, minX, minY, minX + 0.05f, minY + 0.05f);
+			else
+				renderer.fill(color, minX, minY, minX + 0.05f, minY + 0.05f);
+		}
+	}
+	
+	@Benchmark
+	public int[] recordAndSubmit() {
+		record(tinyRenderer);
+		tinyRenderer.maybeRenderNow();
+		return tinyRenderer.getPixels();
+	}
+	
+	@Benchmark
+	public int[] relativeRecordAndSubmit() {
+		record(tinyRenderer.getArea(0.1f, 0.1f, 0.9f, 0.9f));
+		tinyRenderer.maybeRenderNow();
+		return tinyRenderer.getPixels();
+	}
+	
+	@Benchmark
+	public int[] rasterize() {
+		record(rasterRenderer);
+		rasterRenderer.maybeRenderNow();
+		return rasterRenderer.getPixels();
+	}
+}
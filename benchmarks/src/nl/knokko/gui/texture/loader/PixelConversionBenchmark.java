@@ -0,0 +1,102 @@
+/*******************************************************************************
+ * The MIT License
+ *
+ * Copyright (c) 2018 knokko
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *  
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *******************************************************************************/
+package nl.knokko.gui.texture.loader;
+
+import java.awt.image.BufferedImage;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures how fast the GLGuiTextureLoader converts the pixels of images to the buffers that are uploaded to
+ * OpenGL, for the image types that have a direct path and for an image type that needs getRGB.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class PixelConversionBenchmark {
+	
+	@Param({"INT_ARGB", "INT_RGB", "4BYTE_ABGR", "3BYTE_BGR", "BYTE_GRAY"})
+	public String imageType;
+	
+	@Param({"64", "512", "2048"})
+	public int size;
+	
+	private BufferedImage image;
+	private GLPixelFormat format;
+	private ByteBuffer buffer;
+	
+	@Setup
+	public void setup() {
+		image = new BufferedImage(size, size, getImageType(imageType));
+		Random random = new Random(size);
+		for (int y = 0; y < size; y++)
+			for (int x = 0; x < size; x++)
+				image.setRGB(x, y, random.nextInt());
+		format = GLPixelFormat.of(image);
+		buffer = ByteBuffer.allocateDirect(format.getByteSize()).order(ByteOrder.nativeOrder());
+	}
+	
+	private static int getImageType(String name) {
+		if (name.equals("INT_ARGB"))
+			return BufferedImage.TYPE_INT_ARGB;
+		if (name.equals("INT_RGB"))
+			return BufferedImage.TYPE_INT_RGB;
+		if (name.equals("4BYTE_ABGR"))
+			return BufferedImage.TYPE_4BYTE_ABGR;
+		if (name.equals("3BYTE_BGR"))
+			return BufferedImage.TYPE_3BYTE_BGR;
+		if (name.equals("BYTE_GRAY"))
+			return BufferedImage.TYPE_BYTE_GRAY;
+		throw new IllegalArgumentException("Unknown image type: " + name);
+	}
+	
+	@Benchmark
+	public ByteBuffer write() {
+		buffer.clear();
+		format.write(image, buffer);
+		return buffer;
+	}
+	
+	@Benchmark
+	public long contentHash() {
+		return format.contentHash(image);
+	}
+}
@@ -0,0 +1,158 @@
+/*******************************************************************************
+ * The MIT License
+ *
+ * Copyright (c) 2018 knokko
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *  
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *******************************************************************************/
+package nl.knokko.gui.window;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.lwjgl.input.Keyboard;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import nl.knokko.gui.component.GuiComponent;
+import nl.knokko.gui.window.input.WindowInput;
+
+/**
+ * Measures the dispatch of synthetic mouse and keyboard events through the same GLInputDispatcher that
+ * preUpdate uses, to a plain main component that ignores them. No window or display is needed for this.
+ * Run it with the GC profiler to check that buffered dispatch doesn't allocate: gc.alloc.rate.norm should
+ * stay close to 0 bytes.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class InputDispatchBenchmark {
+	
+	@Param({"1000"})
+	public int events;
+	
+	private GLInputDispatcher dispatcher;
+	private GLInputBuffer buffer;
+	
+	private int[] wheels;
+	private int[] buttons;
+	private boolean[] buttonStates;
+	private float[] mouseX;
+	private float[] mouseY;
+	
+	private int[] keys;
+	private char[] characters;
+	private boolean[] keyStates;
+	
+	@Setup
+	public void setup() {
+		dispatcher = new GLInputDispatcher();
+		dispatcher.setTargets(createIgnoringComponent(), null, new WindowInput());
+		buffer = new GLInputBuffer();
+		Random random = new Random(events);
+		wheels = new int[events];
+		buttons = new int[events];
+		buttonStates = new boolean[events];
+		mouseX = new float[events];
+		mouseY = new float[events];
+		keys = new int[events];
+		characters = new char[events];
+		keyStates = new boolean[events];
+		for (int index = 0; index < events; index++) {
+			
+			// Most mouse events are just movement, some scroll and some press or release a button
+			int kind = random.nextInt(10);
+			wheels[index] = kind == 0 ? 120 : 0;
+			buttons[index] = kind == 1 ? random.nextInt(2) : -1;
+			buttonStates[index] = random.nextBoolean();
+			mouseX[index] = random.nextFloat();
+			mouseY[index] = random.nextFloat();
+			
+			// Keys are pressed and then released
+			keys[index] = Keyboard.KEY_A + random.nextInt(10);
+			keyStates[index] = index % 2 == 0;
+			characters[index] = keyStates[index] ? (char) ('a' + random.nextInt(26)) : Keyboard.CHAR_NONE;
+		}
+	}
+	
+	/**
+	 * Creates a main component that ignores all events and returns default values.
+	 */
+	private static GuiComponent createIgnoringComponent() {
+		return (GuiComponent) Proxy.newProxyInstance(GuiComponent.class.getClassLoader(), new Class<?>[] {GuiComponent.class}, new InvocationHandler() {
+
+			@Override
+			public Object invoke(Object proxy, Method method, Object[] args) {
+				Class<?> returnType = method.getReturnType();
+				if (returnType == boolean.class)
+					return false;
+				if (returnType == int.class)
+					return 0;
+				if (returnType == float.class)
+					return 0f;
+				return null;
+			}
+		});
+	}
+	
+	@Benchmark
+	public GLInputDispatcher mouseEvents() {
+		for (int index = 0; index < events; index++)
+			dispatcher.processMouseEvent(wheels[index], buttons[index], buttonStates[index], mouseX[index], mouseY[index]);
+		return dispatcher;
+	}
+	
+	@Benchmark
+	public GLInputDispatcher keyEvents() {
+		for (int index = 0; index < events; index++)
+			dispatcher.processKeyEvent(keys[index], characters[index], keyStates[index]);
+		return dispatcher;
+	}
+	
+	@Benchmark
+	public GLInputDispatcher bufferedEvents() {
+		for (int index = 0; index < events; index++) {
+			if (wheels[index] != 0)
+				buffer.addScroll(wheels[index]);
+			else if (buttons[index] != -1)
+				buffer.addButton(buttons[index], buttonStates[index], mouseX[index], mouseY[index]);
+			else
+				buffer.addMotion(1, -1);
+			buffer.addKey(keys[index], characters[index], keyStates[index]);
+		}
+		dispatcher.dispatch(buffer);
+		buffer.clear();
+		return dispatcher;
+	}
+}
@@ -31,6 +31,20 @@ public class GLKeyConverter {
 	
 	private static int[][] CONVERT_MAP;
 	
+	/**
+	 * The gui key codes of lwjgl key code k are at the indices from CODE_OFFSETS[k] until CODE_OFFSETS[k + 1]
+	 * of CODES. Undefined keys have no gui key codes.
+	 */
+	private static final int[] CODE_OFFSETS;
+	private static final int[] CODES;
+	
+	/**
+	 * The lwjgl key codes of gui key code c are at the indices from GL_KEY_OFFSETS[c] until GL_KEY_OFFSETS[c + 1]
+	 * of GL_KEYS.
+	 */
+	private static final int[] GL_KEY_OFFSETS;
+	private static final int[] GL_KEYS;
+	
 	static {
 		CONVERT_MAP = new int[222][];
 		put(Keyboard.KEY_NONE, UNDEFINED);
@@ -140,6 +154,33 @@ public class GLKeyConverter {
 		put(Keyboard.KEY_UP, KEY_UP);
 		put(Keyboard.KEY_RIGHT, KEY_RIGHT);
 		put(Keyboard.KEY_DOWN, KEY_DOWN);
+		
+		CODE_OFFSETS = new int[CONVERT_MAP.length + 1];
+		int maxCode = 0;
+		for(int glKeyCode = 0; glKeyCode < CONVERT_MAP.length; glKeyCode++){
+			int[] codes = CONVERT_MAP[glKeyCode];
+			int count = codes == null || codes[0] == UNDEFINED ? 0 : codes.length;
+			CODE_OFFSETS[glKeyCode + 1] = CODE_OFFSETS[glKeyCode] + count;
+			for(int index = 0; index < count; index++)
+				maxCode = Math.max(maxCode, codes[index]);
+		}
+		CODES = new int[CODE_OFFSETS[CONVERT_MAP.length]];
+		GL_KEY_OFFSETS = new int[maxCode + 2];
+		for(int glKeyCode = 0; glKeyCode < CONVERT_MAP.length; glKeyCode++){
+			for(int index = CODE_OFFSETS[glKeyCode]; index < CODE_OFFSETS[glKeyCode + 1]; index++){
+				int code = CONVERT_MAP[glKeyCode][index - CODE_OFFSETS[glKeyCode]];
+				CODES[index] = code;
+				GL_KEY_OFFSETS[code + 1]++;
+			}
+		}
+		for(int code = 0; code <= maxCode; code++)
+			GL_KEY_OFFSETS[code + 1] += GL_KEY_OFFSETS[code];
+		GL_KEYS = new int[CODES.length];
+		int[] nextIndices = new int[maxCode + 1];
+		System.arraycopy(GL_KEY_OFFSETS, 0, nextIndices, 0, maxCode + 1);
+		for(int glKeyCode = 0; glKeyCode < CONVERT_MAP.length; glKeyCode++)
+			for(int index = CODE_OFFSETS[glKeyCode]; index < CODE_OFFSETS[glKeyCode + 1]; index++)
+				GL_KEYS[nextIndices[CODES[index]]++] = glKeyCode;
 	}
 	
 	private static void put(int glKeyCode, int... guiKeyCodes){
@@ -159,4 +200,34 @@ public class GLKeyConverter {
 	public static int[] getDirect(int glKeyCode){
 		return CONVERT_MAP[glKeyCode];
 	}
+	
+	/**
+	 * @return The number of gui key codes of the given lwjgl key code, which is 0 for undefined keys
+	 */
+	public static int getCodeCount(int glKeyCode){
+		if(glKeyCode < 0 || glKeyCode >= CONVERT_MAP.length)
+			return 0;
+		return CODE_OFFSETS[glKeyCode + 1] - CODE_OFFSETS[glKeyCode];
+	}
+	
+	/**
+	 * @return The gui key code with the given index of the given lwjgl key code. The index must be smaller
+	 * than getCodeCount(glKeyCode).
+	 */
+	public static int getCode(int glKeyCode, int index){
+		return CODES[CODE_OFFSETS[glKeyCode] + index];
+	}
+	
+	/**
+	 * @return True if any of the keys with the given gui key code is currently pressed. For instance,
+	 * KEY_SHIFT is down when either the left shift or the right shift is pressed.
+	 */
+	public static boolean isKeyDown(int guiKeyCode){
+		if(guiKeyCode < 0 || guiKeyCode + 1 >= GL_KEY_OFFSETS.length)
+			return false;
+		for(int index = GL_KEY_OFFSETS[guiKeyCode]; index < GL_KEY_OFFSETS[guiKeyCode + 1]; index++)
+			if(Keyboard.isKeyDown(GL_KEYS[index]))
+				return true;
+		return false;
+	}
 }
\ No newline at end of file
@@ -0,0 +1,169 @@
+/*******************************************************************************
+ * The MIT License
+ *
+ * Copyright (c) 2018 knokko
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *  
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *******************************************************************************/
+package nl.knokko.gui.render;
+
+import nl.knokko.gui.color.GuiColor;
+import nl.knokko.gui.texture.GLPartGuiTexture;
+import nl.knokko.gui.texture.GuiTexture;
+
+/**
+ * The renderer that is returned by the getArea method of the GLGuiRenderer, its layers, the GLCommandBuffer
+ * and the SoftwareGuiRenderer. Everything that is rendered on it is clipped to its area, and to the areas it is
+ * part of. This keeps the content of scroll panels from drawing over their neighbours.
+ * 
+ * Quads that are completely outside the clip rectangle are dropped right away, so they never become render
+ * commands. Fills are clipped on the CPU. Textures that are partially visible and clears are drawn with a
+ * scissor box.
+ * The GLGuiRenderer only changes the scissor box when a quad needs a different one, so consecutive clipped
+ * quads of the same area can still share a batch.
+ * 
+ * Components can use isVisible to skip the rendering of whole subtrees, for instance the entries of a long
+ * scroll list that are outside the visible part of the list:
+ * 
+ * if (((GLClipRenderer) renderer).isVisible(0, entryMinY, 1, entryMaxY))
+ *     entry.render(renderer.getArea(0, entryMinY, 1, entryMaxY));
+ */
+public class GLClipRenderer extends GuiRenderer {
+	
+	/**
+	 * The marker textures that the renderTextureNow methods of the roots recognize. The coordinates of the start marker
+	 * are the clip rectangle of the quad that follows it.
+	 */
+	static final ClipTexture CLIP_START = new ClipTexture();
+	static final ClipTexture CLIP_END = new ClipTexture();
+	
+	private final GuiRenderer root;
+	
+	// The area of this renderer and the visible part of it, in the coordinates of the root
+	private final float minX, minY, maxX, maxY;
+	private final float clipMinX, clipMinY, clipMaxX, clipMaxY;
+	
+	GLClipRenderer(GuiRenderer root, float minX, float minY, float maxX, float maxY){
+		this(root, minX, minY, maxX, maxY, 0, 0, 1, 1);
+	}
+	
+	private GLClipRenderer(GuiRenderer root, float minX, float minY, float maxX, float maxY, 
+			float parentClipMinX, float parentClipMinY, float parentClipMaxX, float parentClipMaxY){
+		this.root = root;
+		this.minX = minX;
+		this.minY = minY;
+		this.maxX = maxX;
+		this.maxY = maxY;
+		clipMinX = Math.max(minX, parentClipMinX);
+		clipMinY = Math.max(minY, parentClipMinY);
+		clipMaxX = Math.min(maxX, parentClipMaxX);
+		clipMaxY = Math.min(maxY, parentClipMaxY);
+	}
+	
+	/**
+	 * @return false if nothing that is rendered on this renderer can be visible
+	 */
+	public boolean isVisible(){
+		return clipMinX < clipMaxX && clipMinY < clipMaxY;
+	}
+	
+	/**
+	 * @return false if nothing in the given part of this area can be visible
+	 */
+	public boolean isVisible(float minX, float minY, float maxX, float maxY){
+		return toRootX(minX) < clipMaxX && toRootX(maxX) > clipMinX && toRootY(minY) < clipMaxY && toRootY(maxY) > clipMinY;
+	}
+	
+	private float toRootX(float x){
+		return minX + x * (maxX - minX);
+	}
+	
+	private float toRootY(float y){
+		return minY + y * (maxY - minY);
+	}
+
+	@Override
+	public GuiRenderer getArea(float minX, float minY, float maxX, float maxY) {
+		return new GLClipRenderer(root, toRootX(minX), toRootY(minY), toRootX(maxX), toRootY(maxY), 
+				clipMinX, clipMinY, clipMaxX, clipMaxY);
+	}
+	
+	@Override
+	public void renderTexture(GuiTexture texture, float minX, float minY, float maxX, float maxY) {
+		renderTextureNow(texture, minX, minY, maxX, maxY);
+	}
+	
+	@Override
+	public void fill(GuiColor color, float minX, float minY, float maxX, float maxY) {
+		fillNow(color, minX, minY, maxX, maxY);
+	}
+	
+	@Override
+	public void clear(GuiColor color) {
+		clearNow(color);
+	}
+
+	@Override
+	void renderTextureNow(GuiTexture texture, float minX, float minY, float maxX, float maxY) {
+		float rootMinX = toRootX(minX);
+		float rootMinY = toRootY(minY);
+		float rootMaxX = toRootX(maxX);
+		float rootMaxY = toRootY(maxY);
+		if (rootMinX >= clipMaxX || rootMinY >= clipMaxY || rootMaxX <= clipMinX || rootMaxY <= clipMinY)
+			return;
+		if (rootMinX >= clipMinX && rootMinY >= clipMinY && rootMaxX <= clipMaxX && rootMaxY <= clipMaxY) {
+			root.renderTexture(texture, rootMinX, rootMinY, rootMaxX, rootMaxY);
+		} else {
+			root.renderTexture(CLIP_START, clipMinX, clipMinY, clipMaxX, clipMaxY);
+			root.renderTexture(texture, rootMinX, rootMinY, rootMaxX, rootMaxY);
+			root.renderTexture(CLIP_END, 0, 0, 1, 1);
+		}
+	}
+
+	@Override
+	void fillNow(GuiColor color, float minX, float minY, float maxX, float maxY) {
+		
+		// A solid color looks the same everywhere, so a fill can simply be made smaller
+		float rootMinX = Math.max(toRootX(minX), clipMinX);
+		float rootMinY = Math.max(toRootY(minY), clipMinY);
+		float rootMaxX = Math.min(toRootX(maxX), clipMaxX);
+		float rootMaxY = Math.min(toRootY(maxY), clipMaxY);
+		if (rootMinX < rootMaxX && rootMinY < rootMaxY)
+			root.fill(color, rootMinX, rootMinY, rootMaxX, rootMaxY);
+	}
+
+	@Override
+	void clearNow(GuiColor color) {
+		
+		// The clear must replace the pixels of this area only, so it needs the scissor box even if no part of
+		// the root is outside this area
+		if (!isVisible())
+			return;
+		root.renderTexture(CLIP_START, clipMinX, clipMinY, clipMaxX, clipMaxY);
+		root.clear(color);
+		root.renderTexture(CLIP_END, 0, 0, 1, 1);
+	}
+	
+	static class ClipTexture extends GLPartGuiTexture {
+		
+		private ClipTexture(){
+			super(0, 0, 0, 1, 1, 1, 1);
+		}
+	}
+}
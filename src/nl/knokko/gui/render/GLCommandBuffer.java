@@ -0,0 +1,84 @@
+/*******************************************************************************
+ * The MIT License
+ *
+ * Copyright (c) 2018 knokko
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *  
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *******************************************************************************/
+package nl.knokko.gui.render;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import nl.knokko.gui.color.GuiColor;
+import nl.knokko.gui.texture.GuiTexture;
+
+/**
+ * A GuiRenderer that only stores the render commands it gets, so that components can record their render
+ * commands on another thread than the OpenGL thread. GLGuiRenderer.render executes the stored commands.
+ * Recording doesn't need OpenGL, but executing does.
+ */
+public class GLCommandBuffer extends GuiRenderer {
+	
+	private final List<RenderCommand> commands;
+	
+	public GLCommandBuffer() {
+		commands = new ArrayList<RenderCommand>();
+	}
+	
+	/**
+	 * Forgets all stored render commands.
+	 */
+	public void reset() {
+		commands.clear();
+	}
+	
+	public int getCommandCount() {
+		return commands.size();
+	}
+	
+	List<RenderCommand> getCommands() {
+		return commands;
+	}
+
+	@Override
+	public GuiRenderer getArea(float minX, float minY, float maxX, float maxY) {
+		return new GLClipRenderer(this, minX, minY, maxX, maxY);
+	}
+	
+	@Override
+	void renderNow(List<RenderCommand> renderCommands) {
+		commands.addAll(renderCommands);
+	}
+
+	@Override
+	void renderTextureNow(GuiTexture texture, float minX, float minY, float maxX, float maxY) {
+		throw new UnsupportedOperationException("A GLCommandBuffer can only store render commands");
+	}
+
+	@Override
+	void fillNow(GuiColor color, float minX, float minY, float maxX, float maxY) {
+		throw new UnsupportedOperationException("A GLCommandBuffer can only store render commands");
+	}
+
+	@Override
+	void clearNow(GuiColor color) {
+		throw new UnsupportedOperationException("A GLCommandBuffer can only store render commands");
+	}
+}
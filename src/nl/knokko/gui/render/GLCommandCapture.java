@@ -0,0 +1,354 @@
+/*******************************************************************************
+ * The MIT License
+ *
+ * Copyright (c) 2018 knokko
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *  
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *******************************************************************************/
+package nl.knokko.gui.render;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.Deflater;
+
+import org.lwjgl.BufferUtils;
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL12;
+import org.lwjgl.opengl.GL13;
+
+/**
+ * Records what the GLGuiRenderer submits to OpenGL in a compact binary log, so that slow frames can be
+ * reproduced and benchmarked offline with GLCommandReplay. Every frame that is rendered while capturing
+ * stores its size, the textured quads, fills and clears in the order they were drawn, how long rendering
+ * took and how many draw calls, texture binds, uniform uploads and texture uploads were needed.
+ * 
+ * The contents of textures are read back from OpenGL the first time they are drawn and again after they
+ * changed, so textures that were loaded before the capture started are included as well. Pixel data with
+ * the same contents is only stored once. Quads drawn on GLRenderLayers are not recorded, but the contents
+ * of the layers are. In partial redraw mode, the quads of every damaged region are recorded separately.
+ * 
+ * The log is a DataOutputStream of records that start with a record type:
+ * FRAME (width, height), DRAW (texture id, minX, minY, maxX, maxY, minU, minV, maxU, maxV),
+ * FILL (red, green, blue, alpha, minX, minY, maxX, maxY), CLEAR (red, green, blue, alpha),
+ * PIXELS (pixels id, width, height, length, deflated ARGB pixels), TEXTURE (texture id, pixels id) and
+ * END_FRAME (render time in nanoseconds, counter count, counter values).
+ */
+public class GLCommandCapture {
+	
+	static final int MAGIC = 0x474C4743;
+	static final int VERSION = 1;
+	
+	static final int FRAME = 1;
+	static final int END_FRAME = 2;
+	static final int PIXELS = 3;
+	static final int TEXTURE = 4;
+	static final int DRAW = 5;
+	static final int FILL = 6;
+	static final int CLEAR = 7;
+	
+	private static final long[] COUNTS = new long[GLFrameProfiler.Counter.values().length];
+	
+	private static final Set<Integer> CAPTURED_TEXTURES = new HashSet<Integer>();
+	private static final Map<PixelsKey,Integer> PIXEL_IDS = new HashMap<PixelsKey,Integer>();
+	
+	private static volatile boolean capturing;
+	private static DataOutputStream output;
+	private static IOException error;
+	
+	private static boolean inFrame;
+	private static long frameStart;
+	private static long frameCount;
+	
+	/**
+	 * Starts capturing the frames of the GLGuiRenderer to the given output. The output will be closed when
+	 * the capture is stopped.
+	 */
+	public static synchronized void start(OutputStream target) throws IOException {
+		if (output != null)
+			throw new IllegalStateException("A capture is already in progress");
+		output = new DataOutputStream(new BufferedOutputStream(target));
+		output.writeInt(MAGIC);
+		output.writeInt(VERSION);
+		error = null;
+		inFrame = false;
+		frameCount = 0;
+		capturing = true;
+	}
+	
+	/**
+	 * Stops capturing and closes the output.
+	 * @throws IOException If writing the capture failed at some point
+	 */
+	public static synchronized void stop() throws IOException {
+		if (output == null)
+			return;
+		capturing = false;
+		CAPTURED_TEXTURES.clear();
+		PIXEL_IDS.clear();
+		try {
+			output.close();
+		} finally {
+			output = null;
+		}
+		if (error != null)
+			throw error;
+	}
+	
+	public static boolean isCapturing(){
+		return capturing;
+	}
+	
+	/**
+	 * @return The number of frames that have been captured since the capture started
+	 */
+	public static synchronized long getFrameCount(){
+		return frameCount;
+	}
+	
+	/**
+	 * Should be called when the contents of the texture with the given id change or when it is deleted,
+	 * so that its contents will be read again when it is drawn.
+	 */
+	public static void textureChanged(int textureID){
+		if (capturing) {
+			synchronized (GLCommandCapture.class) {
+				CAPTURED_TEXTURES.remove(textureID);
+			}
+		}
+	}
+	
+	static void count(GLFrameProfiler.Counter counter){
+		if (capturing) {
+			synchronized (GLCommandCapture.class) {
+				COUNTS[counter.ordinal()]++;
+			}
+		}
+	}
+	
+	static synchronized void beginFrame(int width, int height){
+		if (!capturing)
+			return;
+		try {
+			output.writeByte(FRAME);
+			output.writeInt(width);
+			output.writeInt(height);
+			for (int index = 0; index < COUNTS.length; index++)
+				COUNTS[index] = 0;
+			inFrame = true;
+			frameStart = System.nanoTime();
+		} catch (IOException ex) {
+			fail(ex);
+		}
+	}
+	
+	static synchronized void endFrame(){
+		if (!capturing || !inFrame)
+			return;
+		try {
+			output.writeByte(END_FRAME);
+			output.writeLong(System.nanoTime() - frameStart);
+			output.writeByte(COUNTS.length);
+			for (long count : COUNTS)
+				output.writeLong(count);
+			inFrame = false;
+			frameCount++;
+		} catch (IOException ex) {
+			fail(ex);
+		}
+	}
+	
+	static synchronized void draw(int textureID, float minX, float minY, float maxX, float maxY, float minU, float minV, float maxU, float maxV){
+		if (!capturing || !inFrame)
+			return;
+		try {
+			if (CAPTURED_TEXTURES.add(textureID))
+				captureTexture(textureID);
+			output.writeByte(DRAW);
+			output.writeInt(textureID);
+			output.writeFloat(minX);
+			output.writeFloat(minY);
+			output.writeFloat(maxX);
+			output.writeFloat(maxY);
+			output.writeFloat(minU);
+			output.writeFloat(minV);
+			output.writeFloat(maxU);
+			output.writeFloat(maxV);
+		} catch (IOException ex) {
+			fail(ex);
+		}
+	}
+	
+	static synchronized void fill(float red, float green, float blue, float alpha, float minX, float minY, float maxX, float maxY){
+		if (!capturing || !inFrame)
+			return;
+		try {
+			output.writeByte(FILL);
+			output.writeFloat(red);
+			output.writeFloat(green);
+			output.writeFloat(blue);
+			output.writeFloat(alpha);
+			output.writeFloat(minX);
+			output.writeFloat(minY);
+			output.writeFloat(maxX);
+			output.writeFloat(maxY);
+		} catch (IOException ex) {
+			fail(ex);
+		}
+	}
+	
+	static synchronized void clear(float red, float green, float blue, float alpha){
+		if (!capturing || !inFrame)
+			return;
+		try {
+			output.writeByte(CLEAR);
+			output.writeFloat(red);
+			output.writeFloat(green);
+			output.writeFloat(blue);
+			output.writeFloat(alpha);
+		} catch (IOException ex) {
+			fail(ex);
+		}
+	}
+	
+	/**
+	 * Stops capturing after a write failed. The exception will be thrown by stop().
+	 */
+	private static void fail(IOException ex){
+		capturing = false;
+		error = ex;
+	}
+	
+	/**
+	 * Reads the pixels of the given texture back from OpenGL and writes them to the capture. The time this
+	 * takes is excluded from the duration of the captured frame.
+	 */
+	private static void captureTexture(int textureID) throws IOException {
+		long startTime = System.nanoTime();
+		try {
+			readTexture(textureID);
+		} finally {
+			frameStart += System.nanoTime() - startTime;
+		}
+	}
+	
+	private static void readTexture(int textureID) throws IOException {
+		GLStateCache.activeTexture(GL13.GL_TEXTURE0);
+		GLStateCache.forceBindTexture(textureID);
+		int width = GL11.glGetTexLevelParameteri(GL11.GL_TEXTURE_2D, 0, GL11.GL_TEXTURE_WIDTH);
+		int height = GL11.glGetTexLevelParameteri(GL11.GL_TEXTURE_2D, 0, GL11.GL_TEXTURE_HEIGHT);
+		if (width == 0 || height == 0) {
+			// Textures without storage can't be drawn, so the replay will skip them
+			return;
+		}
+		IntBuffer buffer = BufferUtils.createIntBuffer(width * height);
+		GL11.glGetTexImage(GL11.GL_TEXTURE_2D, 0, GL12.GL_BGRA, GL12.GL_UNSIGNED_INT_8_8_8_8_REV, buffer);
+		int[] pixels = new int[width * height];
+		buffer.get(pixels);
+		
+		PixelsKey key = new PixelsKey(pixels, width, height);
+		Integer pixelsID = PIXEL_IDS.get(key);
+		if (pixelsID == null) {
+			pixelsID = PIXEL_IDS.size();
+			PIXEL_IDS.put(key, pixelsID);
+			writePixels(pixelsID, pixels, width, height);
+		}
+		output.writeByte(TEXTURE);
+		output.writeInt(textureID);
+		output.writeInt(pixelsID);
+	}
+	
+	private static void writePixels(int pixelsID, int[] pixels, int width, int height) throws IOException {
+		byte[] bytes = new byte[pixels.length * 4];
+		for (int index = 0; index < pixels.length; index++) {
+			int pixel = pixels[index];
+			bytes[4 * index] = (byte) (pixel >> 24);
+			bytes[4 * index + 1] = (byte) (pixel >> 16);
+			bytes[4 * index + 2] = (byte) (pixel >> 8);
+			bytes[4 * index + 3] = (byte) pixel;
+		}
+		Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+		deflater.setInput(bytes);
+		deflater.finish();
+		byte[] compressed = new byte[bytes.length / 4 + 64];
+		int length = 0;
+		while (!deflater.finished()) {
+			if (length == compressed.length) {
+				byte[] bigger = new byte[compressed.length * 2];
+				System.arraycopy(compressed, 0, bigger, 0, length);
+				compressed = bigger;
+			}
+			length += deflater.deflate(compressed, length, compressed.length - length);
+		}
+		deflater.end();
+		output.writeByte(PIXELS);
+		output.writeInt(pixelsID);
+		output.writeInt(width);
+		output.writeInt(height);
+		output.writeInt(length);
+		output.write(compressed, 0, length);
+	}
+	
+	private static long hashPixels(int[] pixels, int width, int height){
+		long hash = 0x9E3779B97F4A7C15L ^ (width * 31L + height);
+		for (int pixel : pixels)
+			hash = Long.rotateLeft(hash ^ (pixel * 0xC2B2AE3D27D4EB4FL), 31) * 0x9E3779B185EBCA87L;
+		hash ^= hash >>> 33;
+		hash *= 0xFF51AFD7ED558CCDL;
+		hash ^= hash >>> 33;
+		return hash;
+	}
+	
+	/**
+	 * Different textures can have the same pixel hash, so the keys keep the pixels to compare when the hashes are equal.
+	 */
+	private static class PixelsKey {
+		
+		private final long hash;
+		private final int[] pixels;
+		private final int width, height;
+		
+		private PixelsKey(int[] pixels, int width, int height){
+			this.hash = hashPixels(pixels, width, height);
+			this.pixels = pixels;
+			this.width = width;
+			this.height = height;
+		}
+		
+		@Override
+		public boolean equals(Object other){
+			if (!(other instanceof PixelsKey))
+				return false;
+			PixelsKey key = (PixelsKey) other;
+			return hash == key.hash && width == key.width && height == key.height && Arrays.equals(pixels, key.pixels);
+		}
+		
+		@Override
+		public int hashCode(){
+			return (int) (hash ^ (hash >>> 32));
+		}
+	}
+}
\ No newline at end of file
@@ -0,0 +1,334 @@
+/*******************************************************************************
+ * The MIT License
+ *
+ * Copyright (c) 2018 knokko
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *  
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *******************************************************************************/
+package nl.knokko.gui.render;
+
+import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import nl.knokko.gui.color.GuiColor;
+import nl.knokko.gui.color.SimpleGuiColor;
+import nl.knokko.gui.texture.GLPartGuiTexture;
+import nl.knokko.gui.texture.GuiTexture;
+import nl.knokko.gui.texture.loader.GuiTextureLoader;
+import nl.knokko.gui.texture.loader.SoftwareGuiTextureLoader;
+
+/**
+ * Executes the frames of a capture that was made with GLCommandCapture on a GuiRenderer, which can be any
+ * backend: a GLGuiRenderer on a window or a SoftwareGuiRenderer without OpenGL. The textures of the capture
+ * are loaded with the given texture loader, which must belong to the renderer. For every frame, the number
+ * of commands, the captured render time and GL call counts and the time the replay took are reported.
+ * 
+ * The main method replays a capture file on a SoftwareGuiRenderer and prints the report of every frame.
+ */
+public class GLCommandReplay {
+	
+	public static void main(String[] args) throws IOException {
+		if (args.length != 1) {
+			System.out.println("Usage: GLCommandReplay <capture file>");
+			return;
+		}
+		SoftwareGuiTextureLoader loader = new SoftwareGuiTextureLoader();
+		final SoftwareGuiRenderer renderer = new SoftwareGuiRenderer(loader, 1, 1);
+		GLCommandReplay replay = new GLCommandReplay(renderer, loader) {
+			
+			@Override
+			protected void startFrame(int width, int height) {
+				if (width != renderer.getWidth() || height != renderer.getHeight())
+					renderer.setSize(width, height);
+			}
+		};
+		List<Frame> frames;
+		InputStream input = new FileInputStream(args[0]);
+		try {
+			frames = replay.replay(input);
+		} finally {
+			input.close();
+		}
+		printReport(frames, System.out);
+	}
+	
+	/**
+	 * Prints a line with the statistics of every frame and a summary to the given output.
+	 */
+	public static void printReport(List<Frame> frames, PrintStream output) {
+		long capturedNanos = 0;
+		long replayNanos = 0;
+		for (Frame frame : frames) {
+			output.println(frame);
+			capturedNanos += frame.getCapturedNanos();
+			replayNanos += frame.getReplayNanos();
+		}
+		output.println(frames.size() + " frames, captured render time " + toMillis(capturedNanos) + " ms, replay time " 
+				+ toMillis(replayNanos) + " ms");
+	}
+	
+	private static double toMillis(long nanoSeconds) {
+		return nanoSeconds / 1000000.0;
+	}
+	
+	private final GuiRenderer renderer;
+	private final GuiTextureLoader textureLoader;
+	
+	private final Map<Integer,BufferedImage> images;
+	private final Map<Integer,GuiTexture> loadedImages;
+	private final Map<Integer,Integer> textures;
+	
+	public GLCommandReplay(GuiRenderer renderer, GuiTextureLoader textureLoader) {
+		this.renderer = renderer;
+		this.textureLoader = textureLoader;
+		images = new HashMap<Integer,BufferedImage>();
+		loadedImages = new HashMap<Integer,GuiTexture>();
+		textures = new HashMap<Integer,Integer>();
+	}
+	
+	/**
+	 * Called at the start of every frame with the size of the window during the capture. Subclasses can
+	 * override this to resize the target of the renderer.
+	 */
+	protected void startFrame(int width, int height) {}
+	
+	/**
+	 * Replays all frames of the given capture.
+	 * @return The statistics of every frame
+	 * @throws IOException If the capture can't be read or is not a valid capture
+	 */
+	public List<Frame> replay(InputStream capture) throws IOException {
+		DataInputStream input = new DataInputStream(new BufferedInputStream(capture));
+		if (input.readInt() != GLCommandCapture.MAGIC)
+			throw new IOException("This is not a capture of GLCommandCapture");
+		int version = input.readInt();
+		if (version != GLCommandCapture.VERSION)
+			throw new IOException("Unsupported capture version " + version);
+		
+		List<Frame> frames = new ArrayList<Frame>();
+		Frame frame = null;
+		long frameStart = 0;
+		long loadNanos = 0;
+		int recordType;
+		while ((recordType = input.read()) != -1) {
+			if (recordType == GLCommandCapture.FRAME) {
+				frame = new Frame(frames.size(), input.readInt(), input.readInt());
+				startFrame(frame.width, frame.height);
+				loadNanos = 0;
+				frameStart = System.nanoTime();
+			} else if (recordType == GLCommandCapture.END_FRAME) {
+				long capturedNanos = input.readLong();
+				long[] counts = new long[input.readUnsignedByte()];
+				for (int index = 0; index < counts.length; index++)
+					counts[index] = input.readLong();
+				if (frame == null)
+					throw new IOException("The end of a frame that wasn't started");
+				renderer.maybeRenderNow();
+				frame.replayNanos = System.nanoTime() - frameStart - loadNanos;
+				frame.capturedNanos = capturedNanos;
+				frame.capturedCounts = counts;
+				frames.add(frame);
+				frame = null;
+			} else if (recordType == GLCommandCapture.PIXELS) {
+				readPixels(input);
+			} else if (recordType == GLCommandCapture.TEXTURE) {
+				textures.put(input.readInt(), input.readInt());
+			} else if (recordType == GLCommandCapture.DRAW) {
+				int textureID = input.readInt();
+				float minX = input.readFloat();
+				float minY = input.readFloat();
+				float maxX = input.readFloat();
+				float maxY = input.readFloat();
+				float minU = input.readFloat();
+				float minV = input.readFloat();
+				float maxU = input.readFloat();
+				float maxV = input.readFloat();
+				long startTime = System.nanoTime();
+				GuiTexture texture = getTexture(textureID, minU, minV, maxU, maxV);
+				loadNanos += System.nanoTime() - startTime;
+				if (texture != null)
+					renderer.renderTexture(texture, minX, minY, maxX, maxY);
+				if (frame != null)
+					frame.draws++;
+			} else if (recordType == GLCommandCapture.FILL) {
+				GuiColor color = readColor(input);
+				renderer.fill(color, input.readFloat(), input.readFloat(), input.readFloat(), input.readFloat());
+				if (frame != null)
+					frame.fills++;
+			} else if (recordType == GLCommandCapture.CLEAR) {
+				renderer.clear(readColor(input));
+				if (frame != null)
+					frame.clears++;
+			} else {
+				throw new IOException("Unknown record type " + recordType);
+			}
+		}
+		return frames;
+	}
+	
+	private void readPixels(DataInputStream input) throws IOException {
+		int pixelsID = input.readInt();
+		int width = input.readInt();
+		int height = input.readInt();
+		byte[] compressed = new byte[input.readInt()];
+		input.readFully(compressed);
+		byte[] bytes = new byte[width * height * 4];
+		Inflater inflater = new Inflater();
+		inflater.setInput(compressed);
+		try {
+			int length = 0;
+			while (length < bytes.length && !inflater.finished())
+				length += inflater.inflate(bytes, length, bytes.length - length);
+			if (length != bytes.length)
+				throw new IOException("The pixel data of image " + pixelsID + " is too short");
+		} catch (DataFormatException ex) {
+			throw new IOException("The pixel data of image " + pixelsID + " is corrupt", ex);
+		} finally {
+			inflater.end();
+		}
+		int[] pixels = new int[width * height];
+		for (int index = 0; index < pixels.length; index++) {
+			pixels[index] = (bytes[4 * index] & 0xFF) << 24 | (bytes[4 * index + 1] & 0xFF) << 16 
+					| (bytes[4 * index + 2] & 0xFF) << 8 | (bytes[4 * index + 3] & 0xFF);
+		}
+		BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+		image.setRGB(0, 0, width, height, pixels, 0, width);
+		images.put(pixelsID, image);
+	}
+	
+	/**
+	 * Returns a texture with the pixels that the captured texture had when it was drawn, with the given uv
+	 * coordinates within the captured texture. The texture loader may put the pixels on a part of a bigger
+	 * texture, so the uv coordinates are converted to that part.
+	 */
+	private GuiTexture getTexture(int capturedID, float minU, float minV, float maxU, float maxV) {
+		Integer pixelsID = textures.get(capturedID);
+		if (pixelsID == null)
+			return null;
+		GuiTexture loaded = loadedImages.get(pixelsID);
+		BufferedImage image = images.get(pixelsID);
+		if (loaded == null) {
+			loaded = textureLoader.loadTexture(image);
+			loadedImages.put(pixelsID, loaded);
+		}
+		float loadedWidth = loaded.getMaxU() - loaded.getMinU();
+		float loadedHeight = loaded.getMaxV() - loaded.getMinV();
+		return new GLPartGuiTexture(loaded.getTextureID(), loaded.getMinU() + minU * loadedWidth, loaded.getMinV() + minV * loadedHeight, 
+				loaded.getMinU() + maxU * loadedWidth, loaded.getMinV() + maxV * loadedHeight, image.getWidth(), image.getHeight());
+	}
+	
+	private static GuiColor readColor(DataInputStream input) throws IOException {
+		return new SimpleGuiColor(toByte(input.readFloat()), toByte(input.readFloat()), toByte(input.readFloat()), toByte(input.readFloat()));
+	}
+	
+	private static int toByte(float value) {
+		return Math.max(0, Math.min(255, Math.round(value * 255)));
+	}
+	
+	/**
+	 * The statistics of a replayed frame
+	 */
+	public static class Frame {
+		
+		private final int index;
+		private final int width;
+		private final int height;
+		
+		private int draws;
+		private int fills;
+		private int clears;
+		
+		private long capturedNanos;
+		private long[] capturedCounts;
+		private long replayNanos;
+		
+		private Frame(int index, int width, int height) {
+			this.index = index;
+			this.width = width;
+			this.height = height;
+		}
+		
+		public int getIndex() {
+			return index;
+		}
+		
+		public int getWidth() {
+			return width;
+		}
+		
+		public int getHeight() {
+			return height;
+		}
+		
+		public int getDrawCount() {
+			return draws;
+		}
+		
+		public int getFillCount() {
+			return fills;
+		}
+		
+		public int getClearCount() {
+			return clears;
+		}
+		
+		/**
+		 * @return How long the GLGuiRenderer needed to render this frame when it was captured
+		 */
+		public long getCapturedNanos() {
+			return capturedNanos;
+		}
+		
+		/**
+		 * @return The value of the given counter during the capture of this frame
+		 */
+		public long getCapturedCount(GLFrameProfiler.Counter counter) {
+			return counter.ordinal() < capturedCounts.length ? capturedCounts[counter.ordinal()] : 0;
+		}
+		
+		/**
+		 * @return How long the replay of this frame took, without loading its textures
+		 */
+		public long getReplayNanos() {
+			return replayNanos;
+		}
+		
+		@Override
+		public String toString() {
+			return "Frame " + index + " (" + width + "x" + height + "): " + draws + " textures, " + fills + " fills, " 
+					+ clears + " clears; captured " + toMillis(capturedNanos) + " ms with " 
+					+ getCapturedCount(GLFrameProfiler.Counter.DRAW_CALLS) + " draw calls, " 
+					+ getCapturedCount(GLFrameProfiler.Counter.TEXTURE_BINDS) + " texture binds, " 
+					+ getCapturedCount(GLFrameProfiler.Counter.UNIFORM_UPLOADS) + " uniform uploads and " 
+					+ getCapturedCount(GLFrameProfiler.Counter.TEXTURE_UPLOADS) + " texture uploads; replayed in " 
+					+ toMillis(replayNanos) + " ms";
+		}
+	}
+}
\ No newline at end of file
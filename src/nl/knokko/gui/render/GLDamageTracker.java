@@ -0,0 +1,190 @@
+/*******************************************************************************
+ * The MIT License
+ *
+ * Copyright (c) 2018 knokko
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *  
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *******************************************************************************/
+package nl.knokko.gui.render;
+
+/**
+ * Collects the parts of the window that changed since the previous frame. The changed rectangles are merged
+ * into a small number of regions that don't overlap, so that the GLGuiRenderer can redraw every region once.
+ * The coordinates are relative to the window, just like the coordinates of the GuiRenderer.
+ */
+public class GLDamageTracker {
+	
+	private static final int DEFAULT_MAX_REGIONS = 4;
+	
+	/**
+	 * When the regions cover at least this part of the window, it is cheaper to simply redraw everything
+	 */
+	private static final float FULL_THRESHOLD = 0.6f;
+	
+	private float[] regions;
+	private int regionCount;
+	private boolean full;
+	
+	public GLDamageTracker(){
+		setMaxRegions(DEFAULT_MAX_REGIONS);
+	}
+	
+	/**
+	 * Sets the maximum number of regions. When there are more changed rectangles, the regions whose union
+	 * adds the least area will be merged.
+	 */
+	public void setMaxRegions(int maxRegions){
+		if (maxRegions < 1)
+			throw new IllegalArgumentException("There must be at least 1 region, but maxRegions is " + maxRegions);
+		regions = new float[4 * (maxRegions + 1)];
+		regionCount = 0;
+		full = true;
+	}
+	
+	/**
+	 * Marks the given rectangle as changed.
+	 */
+	public void add(float minX, float minY, float maxX, float maxY){
+		if (full)
+			return;
+		minX = Math.max(minX, 0);
+		minY = Math.max(minY, 0);
+		maxX = Math.min(maxX, 1);
+		maxY = Math.min(maxY, 1);
+		if (minX >= maxX || minY >= maxY)
+			return;
+		insert(minX, minY, maxX, maxY);
+		while (regionCount > regions.length / 4 - 1)
+			mergeCheapestPair();
+		float area = 0;
+		for (int index = 0; index < regionCount; index++)
+			area += getArea(index);
+		if (area >= FULL_THRESHOLD)
+			addAll();
+	}
+	
+	/**
+	 * Marks the entire window as changed.
+	 */
+	public void addAll(){
+		full = true;
+		regionCount = 0;
+	}
+	
+	/**
+	 * Forgets all changes, this should be called after the changes have been redrawn.
+	 */
+	public void clear(){
+		full = false;
+		regionCount = 0;
+	}
+	
+	public boolean isDirty(){
+		return full || regionCount > 0;
+	}
+	
+	/**
+	 * @return true if the entire window needs to be redrawn, in which case there are no regions
+	 */
+	public boolean isFull(){
+		return full;
+	}
+	
+	public int getRegionCount(){
+		return regionCount;
+	}
+	
+	public float getMinX(int region){
+		return regions[4 * region];
+	}
+	
+	public float getMinY(int region){
+		return regions[4 * region + 1];
+	}
+	
+	public float getMaxX(int region){
+		return regions[4 * region + 2];
+	}
+	
+	public float getMaxY(int region){
+		return regions[4 * region + 3];
+	}
+	
+	private float getArea(int region){
+		return (getMaxX(region) - getMinX(region)) * (getMaxY(region) - getMinY(region));
+	}
+	
+	/**
+	 * Adds the given rectangle and merges it with all regions it overlaps, so the regions never overlap.
+	 */
+	private void insert(float minX, float minY, float maxX, float maxY){
+		int index = 0;
+		while (index < regionCount) {
+			if (minX < getMaxX(index) && maxX > getMinX(index) && minY < getMaxY(index) && maxY > getMinY(index)) {
+				minX = Math.min(minX, getMinX(index));
+				minY = Math.min(minY, getMinY(index));
+				maxX = Math.max(maxX, getMaxX(index));
+				maxY = Math.max(maxY, getMaxY(index));
+				remove(index);
+				
+				// The bigger rectangle may overlap regions that were checked before
+				index = 0;
+			} else {
+				index++;
+			}
+		}
+		regions[4 * regionCount] = minX;
+		regions[4 * regionCount + 1] = minY;
+		regions[4 * regionCount + 2] = maxX;
+		regions[4 * regionCount + 3] = maxY;
+		regionCount++;
+	}
+	
+	private void remove(int region){
+		regionCount--;
+		System.arraycopy(regions, 4 * regionCount, regions, 4 * region, 4);
+	}
+	
+	private void mergeCheapestPair(){
+		int bestFirst = 0;
+		int bestSecond = 1;
+		float bestCost = Float.POSITIVE_INFINITY;
+		for (int first = 0; first < regionCount; first++) {
+			for (int second = first + 1; second < regionCount; second++) {
+				float unionArea = (Math.max(getMaxX(first), getMaxX(second)) - Math.min(getMinX(first), getMinX(second))) 
+						* (Math.max(getMaxY(first), getMaxY(second)) - Math.min(getMinY(first), getMinY(second)));
+				float cost = unionArea - getArea(first) - getArea(second);
+				if (cost < bestCost) {
+					bestCost = cost;
+					bestFirst = first;
+					bestSecond = second;
+				}
+			}
+		}
+		float minX = Math.min(getMinX(bestFirst), getMinX(bestSecond));
+		float minY = Math.min(getMinY(bestFirst), getMinY(bestSecond));
+		float maxX = Math.max(getMaxX(bestFirst), getMaxX(bestSecond));
+		float maxY = Math.max(getMaxY(bestFirst), getMaxY(bestSecond));
+		
+		// Remove the second region first, because remove moves the last region into the removed slot
+		remove(bestSecond);
+		remove(bestFirst);
+		insert(minX, minY, maxX, maxY);
+	}
+}
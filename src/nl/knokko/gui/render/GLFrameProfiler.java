@@ -0,0 +1,405 @@
+/*******************************************************************************
+ * The MIT License
+ *
+ * Copyright (c) 2018 knokko
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *  
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *******************************************************************************/
+package nl.knokko.gui.render;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+/**
+ * Measures how long every phase of the frames of the GLGuiWindow takes and counts the GL calls of every frame.
+ * The durations of the last SAMPLE_COUNT samples of every phase are kept, so percentiles can be computed over
+ * a rolling window. Profiling is disabled by default, in which case begin() returns 0 and all other methods
+ * that record something return immediately.
+ * 
+ * The frames belong to the OpenGL thread. Other threads that measure a part of the frame, like the pipeline
+ * worker of the GLGuiWindow, should record into their own WorkerSamples, which the OpenGL thread adds to its
+ * frame with addWorkerSamples.
+ */
+public class GLFrameProfiler {
+	
+	public static enum Phase {
+		
+		/** The asynchronous texture uploads at the start of the frame */
+		UPLOADS,
+		
+		/** Polling and dispatching input events and updating the components */
+		UPDATE,
+		
+		/** Letting the components give their render commands to the renderer */
+		RECORD,
+		
+		/** Executing the render commands in GLGuiRenderer.renderNow */
+		RENDER,
+		
+		/** Display.update, which swaps the buffers */
+		SWAP,
+		
+		/** Display.sync, which waits until it's time for the next frame */
+		SYNC,
+		
+		/** The entire frame */
+		FRAME
+	}
+	
+	public static enum Counter {
+		DRAW_CALLS,
+		TEXTURE_BINDS,
+		UNIFORM_UPLOADS,
+		TEXTURE_UPLOADS,
+		
+		/** The number of uploads to vertex buffers, including the partial uploads of GLQuadScenes */
+		BUFFER_UPLOADS,
+		
+		/** The number of mouse events that the GLGuiWindow merged into other mouse events */
+		COALESCED_INPUT_EVENTS
+	}
+	
+	private static final int SAMPLE_COUNT = 1024;
+	
+	private static final long[][] SAMPLES = new long[Phase.values().length][SAMPLE_COUNT];
+	private static final int[] SAMPLE_SIZES = new int[Phase.values().length];
+	private static final int[] NEXT_SAMPLES = new int[Phase.values().length];
+	
+	private static final long[] COUNTS = new long[Counter.values().length];
+	private static final long[] LAST_COUNTS = new long[Counter.values().length];
+	private static final long[] TOTAL_COUNTS = new long[Counter.values().length];
+	
+	private static volatile boolean enabled;
+	private static long frameCount;
+	private static long frameStart;
+	
+	private static final ThreadLocal<WorkerSamples> WORKER_SAMPLES = new ThreadLocal<WorkerSamples>();
+	
+	private static ObjectName mbeanName;
+	
+	public static void setEnabled(boolean enabled){
+		GLFrameProfiler.enabled = enabled;
+	}
+	
+	public static boolean isEnabled(){
+		return enabled;
+	}
+	
+	/**
+	 * @return The start time of a phase, which should be passed to end(), or 0 if profiling is disabled
+	 */
+	public static long begin(){
+		return enabled ? System.nanoTime() : 0;
+	}
+	
+	/**
+	 * Records the duration of a phase that started at startTime, which was returned by begin().
+	 */
+	public static void end(Phase phase, long startTime){
+		if (startTime != 0 && enabled)
+			end(phase, startTime, System.nanoTime());
+	}
+	
+	/**
+	 * Records the duration of a phase that ran from startTime until endTime, which were both returned by begin().
+	 */
+	public static void end(Phase phase, long startTime, long endTime){
+		if (startTime != 0 && endTime != 0 && enabled) {
+			long duration = endTime - startTime;
+			WorkerSamples samples = WORKER_SAMPLES.get();
+			if (samples == null)
+				record(phase, duration);
+			else
+				samples.durations[phase.ordinal()] += duration;
+		}
+	}
+	
+	private static synchronized void record(Phase phase, long duration){
+		int index = phase.ordinal();
+		SAMPLES[index][NEXT_SAMPLES[index]] = duration;
+		NEXT_SAMPLES[index] = (NEXT_SAMPLES[index] + 1) % SAMPLE_COUNT;
+		if (SAMPLE_SIZES[index] < SAMPLE_COUNT)
+			SAMPLE_SIZES[index]++;
+	}
+	
+	public static void count(Counter counter){
+		if (enabled) {
+			WorkerSamples samples = WORKER_SAMPLES.get();
+			if (samples == null)
+				COUNTS[counter.ordinal()]++;
+			else
+				samples.counts[counter.ordinal()]++;
+		}
+		GLCommandCapture.count(counter);
+	}
+	
+	/**
+	 * Lets the durations and counts that are recorded on the current thread go to the given samples instead of
+	 * the current frame, or to the current frame again if samples is null. This should be called by threads
+	 * other than the OpenGL thread before they record anything.
+	 */
+	public static void setWorkerSamples(WorkerSamples samples){
+		if (samples == null)
+			WORKER_SAMPLES.remove();
+		else
+			WORKER_SAMPLES.set(samples);
+	}
+	
+	/**
+	 * Adds the durations and counts of the given samples to the current frame and clears the samples. This
+	 * must be called on the OpenGL thread, while the thread that records into the samples can't touch them.
+	 */
+	public static void addWorkerSamples(WorkerSamples samples){
+		if (enabled) {
+			for (int index = 0; index < samples.durations.length; index++)
+				if (samples.durations[index] != 0)
+					record(Phase.values()[index], samples.durations[index]);
+			for (int index = 0; index < samples.counts.length; index++)
+				COUNTS[index] += samples.counts[index];
+		}
+		samples.clear();
+	}
+	
+	/**
+	 * Ends the current frame: records its duration and makes its counters available through getLastCount.
+	 * The GLGuiWindow calls this after every frame that it rendered.
+	 */
+	public static void endFrame(){
+		if (!enabled) {
+			frameStart = 0;
+			return;
+		}
+		long now = System.nanoTime();
+		if (frameStart != 0)
+			record(Phase.FRAME, now - frameStart);
+		frameStart = now;
+		synchronized (GLFrameProfiler.class) {
+			for (int index = 0; index < COUNTS.length; index++) {
+				LAST_COUNTS[index] = COUNTS[index];
+				TOTAL_COUNTS[index] += COUNTS[index];
+				COUNTS[index] = 0;
+			}
+			frameCount++;
+		}
+	}
+	
+	/**
+	 * Forgets the counters of the current frame and restarts its timer, so that the next frame doesn't include
+	 * them. The GLGuiWindow calls this after every iteration in which it didn't render.
+	 */
+	public static void skipFrame(){
+		frameStart = enabled ? System.nanoTime() : 0;
+		synchronized (GLFrameProfiler.class) {
+			Arrays.fill(COUNTS, 0);
+		}
+	}
+	
+	public static synchronized long getFrameCount(){
+		return frameCount;
+	}
+	
+	/**
+	 * @return The value of the counter in the last frame that ended
+	 */
+	public static synchronized long getLastCount(Counter counter){
+		return LAST_COUNTS[counter.ordinal()];
+	}
+	
+	/**
+	 * @return The total value of the counter over all frames that ended since the last reset
+	 */
+	public static synchronized long getTotalCount(Counter counter){
+		return TOTAL_COUNTS[counter.ordinal()];
+	}
+	
+	/**
+	 * @param percentile A number between 0 and 100
+	 * @return The given percentile of the recent durations of the given phase in nanoseconds, or 0 if there
+	 * are no samples
+	 */
+	public static long getPercentile(Phase phase, double percentile){
+		long[] sorted = getSortedSamples(phase);
+		if (sorted.length == 0)
+			return 0;
+		int index = (int) Math.ceil(percentile / 100 * sorted.length) - 1;
+		return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+	}
+	
+	/**
+	 * @return The longest recent duration of the given phase in nanoseconds, or 0 if there are no samples
+	 */
+	public static long getMax(Phase phase){
+		long[] sorted = getSortedSamples(phase);
+		return sorted.length == 0 ? 0 : sorted[sorted.length - 1];
+	}
+	
+	private static long[] getSortedSamples(Phase phase){
+		long[] samples;
+		synchronized (GLFrameProfiler.class) {
+			samples = Arrays.copyOf(SAMPLES[phase.ordinal()], SAMPLE_SIZES[phase.ordinal()]);
+		}
+		Arrays.sort(samples);
+		return samples;
+	}
+	
+	/**
+	 * Forgets all samples and counters.
+	 */
+	public static synchronized void reset(){
+		Arrays.fill(SAMPLE_SIZES, 0);
+		Arrays.fill(NEXT_SAMPLES, 0);
+		Arrays.fill(COUNTS, 0);
+		Arrays.fill(LAST_COUNTS, 0);
+		Arrays.fill(TOTAL_COUNTS, 0);
+		frameCount = 0;
+		frameStart = 0;
+	}
+	
+	/**
+	 * Registers the profiler as MBean with name nl.knokko.gui:type=GLFrameProfiler at the platform MBean server.
+	 */
+	public static synchronized void registerMBean() throws JMException {
+		if (mbeanName == null) {
+			ObjectName name = new ObjectName("nl.knokko.gui:type=GLFrameProfiler");
+			ManagementFactory.getPlatformMBeanServer().registerMBean(new StandardMBean(new MBean(), GLFrameProfilerMBean.class), name);
+			mbeanName = name;
+		}
+	}
+	
+	public static synchronized void unregisterMBean() throws JMException {
+		if (mbeanName != null) {
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(mbeanName);
+			mbeanName = null;
+		}
+	}
+	
+	/**
+	 * The durations and counts that another thread than the OpenGL thread recorded since they were last
+	 * added to a frame. The durations of a phase are summed, so they become a single sample of that phase.
+	 */
+	public static class WorkerSamples {
+		
+		private final long[] durations = new long[Phase.values().length];
+		private final long[] counts = new long[Counter.values().length];
+		
+		/**
+		 * Adds the durations and counts of other to these samples and clears other.
+		 */
+		public void add(WorkerSamples other){
+			for (int index = 0; index < durations.length; index++)
+				durations[index] += other.durations[index];
+			for (int index = 0; index < counts.length; index++)
+				counts[index] += other.counts[index];
+			other.clear();
+		}
+		
+		public void clear(){
+			Arrays.fill(durations, 0);
+			Arrays.fill(counts, 0);
+		}
+	}
+	
+	private static double toMillis(long nanoSeconds){
+		return nanoSeconds / 1000000.0;
+	}
+	
+	private static class MBean implements GLFrameProfilerMBean {
+
+		@Override
+		public boolean isEnabled() {
+			return GLFrameProfiler.isEnabled();
+		}
+
+		@Override
+		public void setEnabled(boolean enabled) {
+			GLFrameProfiler.setEnabled(enabled);
+		}
+
+		@Override
+		public long getFrameCount() {
+			return GLFrameProfiler.getFrameCount();
+		}
+
+		@Override
+		public double getFrameTimeP50Millis() {
+			return toMillis(getPercentile(Phase.FRAME, 50));
+		}
+
+		@Override
+		public double getFrameTimeP99Millis() {
+			return toMillis(getPercentile(Phase.FRAME, 99));
+		}
+
+		@Override
+		public double getFrameTimeMaxMillis() {
+			return toMillis(getMax(Phase.FRAME));
+		}
+
+		@Override
+		public String[] getPhaseSummaries() {
+			Phase[] phases = Phase.values();
+			String[] result = new String[phases.length];
+			for (int index = 0; index < phases.length; index++) {
+				Phase phase = phases[index];
+				result[index] = phase + ": p50 = " + toMillis(getPercentile(phase, 50)) + " ms, p99 = " 
+						+ toMillis(getPercentile(phase, 99)) + " ms, max = " + toMillis(getMax(phase)) + " ms";
+			}
+			return result;
+		}
+
+		@Override
+		public long getLastDrawCalls() {
+			return getLastCount(Counter.DRAW_CALLS);
+		}
+
+		@Override
+		public long getLastTextureBinds() {
+			return getLastCount(Counter.TEXTURE_BINDS);
+		}
+
+		@Override
+		public long getLastUniformUploads() {
+			return getLastCount(Counter.UNIFORM_UPLOADS);
+		}
+
+		@Override
+		public long getLastTextureUploads() {
+			return getLastCount(Counter.TEXTURE_UPLOADS);
+		}
+
+		@Override
+		public long getLastBufferUploads() {
+			return getLastCount(Counter.BUFFER_UPLOADS);
+		}
+
+		@Override
+		public long getLastCoalescedInputEvents() {
+			return getLastCount(Counter.COALESCED_INPUT_EVENTS);
+		}
+
+		@Override
+		public void reset() {
+			GLFrameProfiler.reset();
+		}
+	}
+}
@@ -0,0 +1,112 @@
+/*******************************************************************************
+ * The MIT License
+ *
+ * Copyright (c) 2018 knokko
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *  
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *******************************************************************************/
+package nl.knokko.gui.render;
+
+import java.nio.ByteBuffer;
+
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL12;
+import org.lwjgl.opengl.GL30;
+
+import nl.knokko.gui.render.GLResourceTracker.Type;
+
+/**
+ * A framebuffer object with a single RGBA8 color texture, used by the GLGuiRenderer to keep rendered pixels
+ * between frames.
+ */
+class GLFramebuffer {
+	
+	private final int width;
+	private final int height;
+	
+	private final int framebufferID;
+	private final int textureID;
+	
+	GLFramebuffer(int width, int height){
+		this.width = width;
+		this.height = height;
+		textureID = GL11.glGenTextures();
+		GLResourceTracker.created(Type.TEXTURE, textureID, width * (long) height * 4);
+		GLStateCache.forceBindTexture(textureID);
+		GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_WRAP_S, GL12.GL_CLAMP_TO_EDGE);
+		GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_WRAP_T, GL12.GL_CLAMP_TO_EDGE);
+		GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_MIN_FILTER, GL11.GL_NEAREST);
+		GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_MAG_FILTER, GL11.GL_NEAREST);
+		GL11.glTexImage2D(GL11.GL_TEXTURE_2D, 0, GL11.GL_RGBA8, width, height, 0, GL11.GL_RGBA, GL11.GL_UNSIGNED_BYTE, (ByteBuffer) null);
+		
+		framebufferID = GL30.glGenFramebuffers();
+		GLResourceTracker.created(Type.FRAMEBUFFER, framebufferID, 0);
+		GL30.glBindFramebuffer(GL30.GL_FRAMEBUFFER, framebufferID);
+		GL30.glFramebufferTexture2D(GL30.GL_FRAMEBUFFER, GL30.GL_COLOR_ATTACHMENT0, GL11.GL_TEXTURE_2D, textureID, 0);
+		int status = GL30.glCheckFramebufferStatus(GL30.GL_FRAMEBUFFER);
+		GL30.glBindFramebuffer(GL30.GL_FRAMEBUFFER, 0);
+		if (status != GL30.GL_FRAMEBUFFER_COMPLETE) {
+			clean();
+			throw new IllegalStateException("Can't create a framebuffer of " + width + "x" + height + ", status is " + status);
+		}
+	}
+	
+	int getWidth(){
+		return width;
+	}
+	
+	int getHeight(){
+		return height;
+	}
+	
+	int getTextureID(){
+		return textureID;
+	}
+	
+	/**
+	 * Lets the following draw calls render into this framebuffer.
+	 */
+	void bind(){
+		GL30.glBindFramebuffer(GL30.GL_FRAMEBUFFER, framebufferID);
+		GLResourceTracker.used(Type.FRAMEBUFFER, framebufferID);
+	}
+	
+	/**
+	 * Lets the following draw calls render to the window again.
+	 */
+	void unbind(){
+		GL30.glBindFramebuffer(GL30.GL_FRAMEBUFFER, 0);
+	}
+	
+	/**
+	 * Copies the pixels of this framebuffer to the given rectangle of the window. The scissor test must be disabled.
+	 */
+	void blitToScreen(int x, int y, int width, int height){
+		GL30.glBindFramebuffer(GL30.GL_READ_FRAMEBUFFER, framebufferID);
+		GL30.glBindFramebuffer(GL30.GL_DRAW_FRAMEBUFFER, 0);
+		GL30.glBlitFramebuffer(0, 0, this.width, this.height, x, y, x + width, y + height, GL11.GL_COLOR_BUFFER_BIT, GL11.GL_NEAREST);
+		GL30.glBindFramebuffer(GL30.GL_FRAMEBUFFER, 0);
+	}
+	
+	void clean(){
+		GL30.glDeleteFramebuffers(framebufferID);
+		GLResourceTracker.deleted(Type.FRAMEBUFFER, framebufferID);
+		GLStateCache.deleteTexture(textureID);
+	}
+}
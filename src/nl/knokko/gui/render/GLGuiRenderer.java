@@ -23,10 +23,8 @@
  *******************************************************************************/
 package nl.knokko.gui.render;
 
-import java.awt.Color;
-import java.awt.image.BufferedImage;
 import java.nio.FloatBuffer;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -39,15 +37,20 @@ import org.lwjgl.opengl.GL20;
 import org.lwjgl.opengl.GL30;
 
 import nl.knokko.gui.color.GuiColor;
+import nl.knokko.gui.render.GLResourceTracker.Type;
+import nl.knokko.gui.shader.GuiSceneShader;
+import nl.knokko.gui.shader.GuiShader;
+import nl.knokko.gui.texture.GLManagedGuiTexture;
 import nl.knokko.gui.texture.GuiTexture;
 import nl.knokko.gui.texture.loader.GLGuiTextureLoader;
 
-import static nl.knokko.gui.shader.GuiShader.GUI_SHADER;
-
 public class GLGuiRenderer extends GuiRenderer {
 	
 	private static final float[] QUAD = {0,1, 0,0, 1,1, 1,0};
 	
+	private static final int DEFAULT_BATCH_SIZE = 4096;
+	private static final long DEFAULT_LAYER_BUDGET = 64L * 1024 * 1024;
+	
 	private static FloatBuffer storeDataInFloatBuffer(float[] data){
 		FloatBuffer buffer = BufferUtils.createFloatBuffer(data.length);
 		buffer.put(data);
@@ -61,99 +64,566 @@ public class GLGuiRenderer extends GuiRenderer {
 	
 	private void loadModel(float[] vertices){
 		quadVAO = GL30.glGenVertexArrays();
+		GLResourceTracker.created(Type.VERTEX_ARRAY, quadVAO, 0);
 		GL30.glBindVertexArray(quadVAO);
 		quadVBO = GL15.glGenBuffers();
-		GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, quadVBO);
+		GLResourceTracker.created(Type.BUFFER, quadVBO, vertices.length * 4);
+		GLStateCache.bindArrayBuffer(quadVBO);
 		FloatBuffer buffer = storeDataInFloatBuffer(vertices);
 		GL15.glBufferData(GL15.GL_ARRAY_BUFFER, buffer, GL15.GL_STATIC_DRAW);
 		GL20.glVertexAttribPointer(0, 2, GL11.GL_FLOAT, false, 0, 0);
-		GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, 0);
+		GLStateCache.bindArrayBuffer(0);
 		GL30.glBindVertexArray(0);
 	}
 	
 	private int quadVAO;
 	private int quadVBO;
 	
-	private Map<GuiColor,GuiTexture> colorMap;
+	private GuiShader shader;
+	private GuiSceneShader sceneShader;
+	
 	private GLGuiTextureLoader textureLoader;
 	
+	private final GLQuadBatch batch;
+	private boolean batching;
+	private boolean isBatchingFrame;
+	
+	private final GLDamageTracker damage;
+	private boolean partialRedraw;
+	private GLFramebuffer backBuffer;
+	
+	// Quads outside these bounds are skipped, they are smaller than the window while redrawing a damaged region
+	private float cullMinX, cullMinY;
+	private float cullMaxX = 1, cullMaxY = 1;
+	private boolean regionScissor;
+	
+	// The clip rectangle that the next quads need, and the clip rectangle of the current scissor box. The
+	// scissor box is only changed when a quad needs a different clip, see updateClip.
+	private boolean clipping;
+	private float clipMinX, clipMinY, clipMaxX, clipMaxY;
+	private boolean appliedClipping;
+	private float appliedMinX, appliedMinY, appliedMaxX, appliedMaxY;
+	private int drawWidth, drawHeight;
+	
+	// The layers in least recently used order
+	private final Map<Object,GLRenderLayer> layers;
+	private long layerBudget;
+	private boolean isLayerFrame;
+	private int frame;
+	
+	// The thread that initialized this renderer, the only thread that can use its layers
+	private Thread glThread;
+	
 	public GLGuiRenderer(GLGuiTextureLoader loader){
+		this(loader, DEFAULT_BATCH_SIZE);
+	}
+	
+	/**
+	 * @param loader The texture loader of the window
+	 * @param batchSize The maximum number of quads that can be drawn with a single draw call in batching mode
+	 */
+	public GLGuiRenderer(GLGuiTextureLoader loader, int batchSize){
 		textureLoader = loader;
+		batch = new GLQuadBatch(batchSize);
+		damage = new GLDamageTracker();
+		layers = new LinkedHashMap<Object,GLRenderLayer>(16, 0.75f, true);
+		layerBudget = DEFAULT_LAYER_BUDGET;
 	}
 	
 	public void init(){
+		glThread = Thread.currentThread();
+		textureLoader.init();
+		shader = new GuiShader();
 		loadModel();
-		colorMap = new HashMap<GuiColor,GuiTexture>();
+		batch.init();
+	}
+	
+	/**
+	 * Enables or disables batching mode. In batching mode, consecutive quads with the same texture are
+	 * collected in a streaming vertex buffer and drawn with a single draw call instead of a draw call per
+	 * quad. The result looks the same as without batching. The change will take effect at the next frame.
+	 */
+	public void setBatching(boolean batching){
+		this.batching = batching;
+	}
+	
+	public boolean isBatching(){
+		return batching;
+	}
+	
+	/**
+	 * Enables or disables partial redraw mode. In this mode, the gui is rendered into a framebuffer that keeps
+	 * its pixels between frames, and only the regions that were reported to the damage tracker are redrawn.
+	 * Render commands outside those regions are skipped and the regions are clipped with the scissor test.
+	 * The framebuffer is copied to the window by presentFrame. All changes of the gui must be reported to
+	 * getDamage() in this mode, the GLGuiWindow does this in its markChange methods.
+	 */
+	public void setPartialRedraw(boolean partialRedraw){
+		this.partialRedraw = partialRedraw;
+		damage.addAll();
+	}
+	
+	public boolean isPartialRedraw(){
+		return partialRedraw;
+	}
+	
+	/**
+	 * @return The damage tracker that determines which parts of the window are redrawn in partial redraw mode
+	 */
+	public GLDamageTracker getDamage(){
+		return damage;
+	}
+	
+	/**
+	 * Copies the pixels that were rendered in partial redraw mode to the window. This needs to happen every
+	 * frame, even if nothing was redrawn, because the contents of the window are lost after swapping buffers.
+	 */
+	public void presentFrame(){
+		if (backBuffer != null) {
+			GLStateCache.setScissorTest(false);
+			backBuffer.blitToScreen(0, 0, Display.getWidth(), Display.getHeight());
+		}
+	}
+	
+	/**
+	 * Returns the layer with the given key and lets it cover the given part of the window. The same key
+	 * should be used every frame, for instance the component that renders on the layer. See GLRenderLayer
+	 * for how to use the layer.
+	 */
+	public GLRenderLayer getLayer(Object key, float minX, float minY, float maxX, float maxY){
+		checkLayerThread();
+		GLRenderLayer layer = layers.get(key);
+		if (layer == null) {
+			layer = new GLRenderLayer(this);
+			layers.put(key, layer);
+		}
+		int width = Math.max(1, Math.round((maxX - minX) * Display.getWidth()));
+		int height = Math.max(1, Math.round((maxY - minY) * Display.getHeight()));
+		layer.setArea(minX, minY, maxX, maxY, width, height);
+		layer.setLastUsedFrame(frame);
+		return layer;
+	}
+	
+	/**
+	 * Deletes the layer with the given key, this should be called when the layer won't be used anymore.
+	 */
+	public void removeLayer(Object key){
+		GLRenderLayer layer = layers.remove(key);
+		if (layer != null)
+			layer.release();
+	}
+	
+	/**
+	 * Invalidates all layers, so they will all be rendered again.
+	 */
+	public void invalidateLayers(){
+		for (GLRenderLayer layer : layers.values())
+			layer.invalidate();
+	}
+	
+	/**
+	 * Sets the amount of video memory that the framebuffers of the layers may use. When a new framebuffer
+	 * would exceed the budget, the framebuffers of the least recently used layers are deleted. Layers that
+	 * are used in the current frame are never evicted.
+	 */
+	public void setLayerBudget(long maxBytes){
+		layerBudget = maxBytes;
+	}
+	
+	/**
+	 * Throws an IllegalStateException if the current thread is not the thread that initialized this renderer.
+	 * Layers render into their framebuffer right away, so they can't be used on threads without OpenGL
+	 * context, like the worker thread of pipelined mode.
+	 */
+	void checkLayerThread(){
+		if (Thread.currentThread() != glThread)
+			throw new IllegalStateException("Layers can only be used on the OpenGL thread, not on " + Thread.currentThread().getName());
+	}
+	
+	void allocateLayer(GLRenderLayer layer, long byteSize){
+		long usedBytes = byteSize;
+		for (GLRenderLayer other : layers.values())
+			usedBytes += other.getByteSize();
+		for (GLRenderLayer other : layers.values()) {
+			if (usedBytes <= layerBudget)
+				break;
+			if (other != layer && other.getLastUsedFrame() != frame) {
+				usedBytes -= other.getByteSize();
+				other.release();
+			}
+		}
+	}
+	
+	void startLayer(GLFramebuffer framebuffer){
+		framebuffer.bind();
+		isLayerFrame = true;
+		startDrawing(framebuffer.getWidth(), framebuffer.getHeight());
+		GLStateCache.setScissorTest(false);
+		GL11.glClearColor(0, 0, 0, 0);
+		GL11.glClear(GL11.GL_COLOR_BUFFER_BIT);
+	}
+	
+	void stopLayer(GLFramebuffer framebuffer){
+		stop();
+		isLayerFrame = false;
+		framebuffer.unbind();
+		GLCommandCapture.textureChanged(framebuffer.getTextureID());
 	}
 	
 	public void start(){
-		GL11.glViewport(0, 0, Display.getWidth(), Display.getHeight());
-		GUI_SHADER.start();
-		GL30.glBindVertexArray(quadVAO);
-		GL20.glEnableVertexAttribArray(0);
-		GL11.glEnable(GL11.GL_BLEND);
-		GL11.glBlendFunc(GL11.GL_SRC_ALPHA, GL11.GL_ONE_MINUS_SRC_ALPHA);
-		GL11.glDisable(GL11.GL_DEPTH_TEST);
+		textureLoader.startFrame();
+		GLResourceTracker.nextFrame();
+		frame++;
+		startDrawing(Display.getWidth(), Display.getHeight());
+	}
+	
+	private void startDrawing(int width, int height){
+		// Other code may have changed the GL state since the previous frame
+		GLStateCache.invalidate();
+		GLStateCache.viewport(0, 0, width, height);
+		drawWidth = width;
+		drawHeight = height;
+		clipping = false;
+		appliedClipping = false;
+		isBatchingFrame = batching;
+		if (isBatchingFrame) {
+			batch.start();
+		} else {
+			shader.start();
+			GLStateCache.bindVertexArray(quadVAO);
+			
+			// The quad vertices are only bound through the vertex array
+			GLResourceTracker.used(Type.BUFFER, quadVBO);
+			GL20.glEnableVertexAttribArray(0);
+		}
+		GLStateCache.setBlend(true);
+		applyBlendFunc();
+		GLStateCache.setDepthTest(false);
+	}
+	
+	private void applyBlendFunc(){
+		if (isLayerFrame) {
+			// Layers store premultiplied colors, so their alpha must be accumulated rather than blended
+			GLStateCache.blendFuncSeparate(GL11.GL_SRC_ALPHA, GL11.GL_ONE_MINUS_SRC_ALPHA, GL11.GL_ONE, GL11.GL_ONE_MINUS_SRC_ALPHA);
+		} else {
+			GLStateCache.blendFunc(GL11.GL_SRC_ALPHA, GL11.GL_ONE_MINUS_SRC_ALPHA);
+		}
+	}
+	
+	/**
+	 * Switches to the blend function for premultiplied colors, which is needed to draw layers.
+	 */
+	private void setPremultipliedBlend(boolean premultiplied){
+		if (isBatchingFrame) {
+			// The pending quads must be drawn with the old blend function
+			batch.flush();
+		}
+		if (premultiplied)
+			GLStateCache.blendFunc(GL11.GL_ONE, GL11.GL_ONE_MINUS_SRC_ALPHA);
+		else
+			applyBlendFunc();
 	}
 	
 	public void stop(){
-		GL11.glEnable(GL11.GL_DEPTH_TEST);
-		GL11.glDisable(GL11.GL_BLEND);
-		GL20.glDisableVertexAttribArray(0);
-		GL30.glBindVertexArray(0);
-		GUI_SHADER.stop();
+		if (isBatchingFrame) {
+			// The remaining quads must be drawn before the blend and depth state is restored
+			batch.flush();
+		}
+		if (appliedClipping) {
+			GLStateCache.setScissorTest(false);
+			appliedClipping = false;
+		}
+		clipping = false;
+		GLStateCache.setDepthTest(true);
+		GLStateCache.setBlend(false);
+		if (isBatchingFrame) {
+			batch.stop();
+		} else {
+			GL20.glDisableVertexAttribArray(0);
+			GLStateCache.bindVertexArray(0);
+			shader.stop();
+		}
 	}
 	
 	public void clean(){
 		GL30.glDeleteVertexArrays(quadVAO);
-		GL15.glDeleteBuffers(quadVBO);
-		GUI_SHADER.clean();
+		GLResourceTracker.deleted(Type.VERTEX_ARRAY, quadVAO);
+		GLStateCache.deleteArrayBuffer(quadVBO);
+		batch.clean();
+		for (GLRenderLayer layer : layers.values())
+			layer.release();
+		layers.clear();
+		if (backBuffer != null) {
+			backBuffer.clean();
+			backBuffer = null;
+		}
+		if (shader != null) {
+			shader.clean();
+			shader = null;
+		}
+		if (sceneShader != null) {
+			sceneShader.clean();
+			sceneShader = null;
+		}
 	}
 
 	@Override
 	public GuiRenderer getArea(float minX, float minY, float maxX, float maxY) {
-		return new RelativeGuiRenderer.Static(this, minX, minY, maxX, maxY);
+		return new GLClipRenderer(this, minX, minY, maxX, maxY);
 	}
 
 	@Override
 	void renderTextureNow(GuiTexture texture, float minX, float minY, float maxX, float maxY) {
-		if (minX <= 1 && minY <= 1 && maxX >= 0 && maxY >= 0) {
+		if (texture instanceof GLClipRenderer.ClipTexture) {
+			clipping = texture == GLClipRenderer.CLIP_START;
+			clipMinX = minX;
+			clipMinY = minY;
+			clipMaxX = maxX;
+			clipMaxY = maxY;
+			return;
+		}
+		if (minX <= cullMaxX && minY <= cullMaxY && maxX >= cullMinX && maxY >= cullMinY) {
 			// Don't waste time rendering things that are completely off the screen
-			GL13.glActiveTexture(GL13.GL_TEXTURE0);
-			GUI_SHADER.loadPosition(minX * 2 - 1, minY * 2 - 1);
-			GUI_SHADER.loadSize(2 * (maxX - minX), 2 * (maxY - minY));
-			GUI_SHADER.loadBounds(texture.getMinU(), texture.getMinV(), texture.getMaxU(), texture.getMaxV());
-			GL11.glBindTexture(GL11.GL_TEXTURE_2D, texture.getTextureID());
-			GL11.glDrawArrays(GL11.GL_TRIANGLE_STRIP, 0, 4);
+			updateClip(minX, minY, maxX, maxY);
+			if (texture instanceof GLQuadScene.SceneTexture) {
+				renderScene(((GLQuadScene.SceneTexture) texture).scene, minX, minY, maxX, maxY);
+				return;
+			}
+			if (texture instanceof GLManagedGuiTexture) {
+				// Evicted textures need to be uploaded again
+				textureLoader.prepareTexture((GLManagedGuiTexture) texture);
+			}
+			int textureID = texture.getTextureID();
+			if (textureID == 0) {
+				// This happens for asynchronously loaded textures that haven't been uploaded yet
+				return;
+			}
+			if (GLCommandCapture.isCapturing() && !isLayerFrame) {
+				if (clipping)
+					captureClippedDraw(textureID, texture, minX, minY, maxX, maxY);
+				else
+					GLCommandCapture.draw(textureID, minX, minY, maxX, maxY, texture.getMinU(), texture.getMinV(), texture.getMaxU(), texture.getMaxV());
+			}
+			boolean premultiplied = texture instanceof GLRenderLayer.LayerTexture;
+			if (premultiplied)
+				setPremultipliedBlend(true);
+			if (isBatchingFrame) {
+				batch.add(textureID, minX, minY, maxX, maxY, texture.getMinU(), texture.getMinV(), texture.getMaxU(), texture.getMaxV());
+			} else {
+				GLStateCache.activeTexture(GL13.GL_TEXTURE0);
+				shader.loadColorMode(false);
+				shader.loadPosition(minX * 2 - 1, minY * 2 - 1);
+				shader.loadSize(2 * (maxX - minX), 2 * (maxY - minY));
+				shader.loadBounds(texture.getMinU(), texture.getMinV(), texture.getMaxU(), texture.getMaxV());
+				GLStateCache.bindTexture(textureID);
+				GL11.glDrawArrays(GL11.GL_TRIANGLE_STRIP, 0, 4);
+				GLFrameProfiler.count(GLFrameProfiler.Counter.DRAW_CALLS);
+			}
+			if (premultiplied)
+				setPremultipliedBlend(false);
+		}
+	}
+
+	/**
+	 * Makes sure that the scissor box clips the quad with the given bounds to the clip rectangle it needs.
+	 * A quad that doesn't need a clip rectangle can keep the current scissor box if it lies inside it, so
+	 * quads that are inside their area don't interrupt the batch of the clipped quads around them.
+	 */
+	private void updateClip(float minX, float minY, float maxX, float maxY){
+		if (clipping == appliedClipping && (!clipping || (clipMinX == appliedMinX && clipMinY == appliedMinY 
+				&& clipMaxX == appliedMaxX && clipMaxY == appliedMaxY)))
+			return;
+		if (!clipping && minX >= appliedMinX && minY >= appliedMinY && maxX <= appliedMaxX && maxY <= appliedMaxY)
+			return;
+		if (isBatchingFrame) {
+			// The pending quads must be drawn with the old scissor box
+			batch.flush();
+		}
+		appliedClipping = clipping;
+		appliedMinX = clipMinX;
+		appliedMinY = clipMinY;
+		appliedMaxX = clipMaxX;
+		appliedMaxY = clipMaxY;
+		
+		// The scissor box must stay inside the damaged region that is being redrawn
+		float scissorMinX = regionScissor ? cullMinX : 0;
+		float scissorMinY = regionScissor ? cullMinY : 0;
+		float scissorMaxX = regionScissor ? cullMaxX : 1;
+		float scissorMaxY = regionScissor ? cullMaxY : 1;
+		if (clipping) {
+			scissorMinX = Math.max(scissorMinX, clipMinX);
+			scissorMinY = Math.max(scissorMinY, clipMinY);
+			scissorMaxX = Math.min(scissorMaxX, clipMaxX);
+			scissorMaxY = Math.min(scissorMaxY, clipMaxY);
+		}
+		if (clipping || regionScissor) {
+			int x = (int) Math.floor(scissorMinX * drawWidth);
+			int y = (int) Math.floor(scissorMinY * drawHeight);
+			int width = Math.max(0, (int) Math.ceil(scissorMaxX * drawWidth) - x);
+			int height = Math.max(0, (int) Math.ceil(scissorMaxY * drawHeight) - y);
+			GLStateCache.setScissorTest(true);
+			GLStateCache.scissor(x, y, width, height);
+		} else {
+			GLStateCache.setScissorTest(false);
+		}
+	}
+	
+	/**
+	 * Records the visible part of a clipped quad, since the GLCommandCapture doesn't know the scissor box.
+	 */
+	private void captureClippedDraw(int textureID, GuiTexture texture, float minX, float minY, float maxX, float maxY){
+		float clippedMinX = Math.max(minX, clipMinX);
+		float clippedMinY = Math.max(minY, clipMinY);
+		float clippedMaxX = Math.min(maxX, clipMaxX);
+		float clippedMaxY = Math.min(maxY, clipMaxY);
+		if (clippedMinX >= clippedMaxX || clippedMinY >= clippedMaxY)
+			return;
+		
+		// The v coordinates go from minV at the top of the quad to maxV at the bottom
+		float uPerX = (texture.getMaxU() - texture.getMinU()) / (maxX - minX);
+		float vPerY = (texture.getMaxV() - texture.getMinV()) / (maxY - minY);
+		GLCommandCapture.draw(textureID, clippedMinX, clippedMinY, clippedMaxX, clippedMaxY, 
+				texture.getMinU() + (clippedMinX - minX) * uPerX, texture.getMinV() + (maxY - clippedMaxY) * vPerY, 
+				texture.getMinU() + (clippedMaxX - minX) * uPerX, texture.getMinV() + (maxY - clippedMinY) * vPerY);
+	}
+	
+	private void renderScene(GLQuadScene scene, float minX, float minY, float maxX, float maxY){
+		if (isBatchingFrame) {
+			// The pending quads must be drawn before the scene
+			batch.flush();
+		}
+		if (GLCommandCapture.isCapturing() && !isLayerFrame) {
+			scene.capture(minX, minY, maxX, maxY);
+		}
+		if (sceneShader == null)
+			sceneShader = new GuiSceneShader();
+		scene.draw(sceneShader, textureLoader, minX, minY, maxX, maxY);
+		
+		// The scene uses its own shader and vertex array
+		if (isBatchingFrame) {
+			batch.start();
+		} else {
+			shader.start();
+			GLStateCache.bindVertexArray(quadVAO);
 		}
 	}
 
 	@Override
 	void fillNow(GuiColor color, float minX, float minY, float maxX, float maxY) {
-		renderTexture(getFilledTexture(color), minX, minY, maxX, maxY);
+		if (minX <= cullMaxX && minY <= cullMaxY && maxX >= cullMinX && maxY >= cullMinY) {
+			updateClip(minX, minY, maxX, maxY);
+			if (GLCommandCapture.isCapturing() && !isLayerFrame) {
+				GLCommandCapture.fill(color.getRedF(), color.getGreenF(), color.getBlueF(), color.getAlphaF(), minX, minY, maxX, maxY);
+			}
+			
+			// Solid fills are drawn with the color mode of the shader, so they don't need a texture
+			if (isBatchingFrame) {
+				batch.addFill(minX, minY, maxX, maxY, color.getRedF(), color.getGreenF(), color.getBlueF(), color.getAlphaF());
+				return;
+			}
+			shader.loadColorMode(true);
+			shader.loadColor(color.getRedF(), color.getGreenF(), color.getBlueF(), color.getAlphaF());
+			shader.loadPosition(minX * 2 - 1, minY * 2 - 1);
+			shader.loadSize(2 * (maxX - minX), 2 * (maxY - minY));
+			GL11.glDrawArrays(GL11.GL_TRIANGLE_STRIP, 0, 4);
+			GLFrameProfiler.count(GLFrameProfiler.Counter.DRAW_CALLS);
+		}
 	}
 
 	@Override
 	void clearNow(GuiColor color) {
-		GL11.glClearColor(color.getRedF(), color.getGreenF(), color.getBlueF(), color.getAlphaF());
+		if (isBatchingFrame) {
+			// Draw the pending quads first to preserve the order of the render commands
+			batch.flush();
+		}
+		updateClip(0, 0, 1, 1);
+		if (GLCommandCapture.isCapturing() && !isLayerFrame) {
+			if (clipping) {
+				// The capture doesn't know the scissor box, and a fill replaces the pixels just like a clear
+				// as long as the color is opaque
+				GLCommandCapture.fill(color.getRedF(), color.getGreenF(), color.getBlueF(), color.getAlphaF(), 
+						clipMinX, clipMinY, clipMaxX, clipMaxY);
+			} else {
+				GLCommandCapture.clear(color.getRedF(), color.getGreenF(), color.getBlueF(), color.getAlphaF());
+			}
+		}
+		if (isLayerFrame) {
+			
+			// Layers store premultiplied colors and a clear isn't blended, so multiply the color here
+			float alpha = color.getAlphaF();
+			GL11.glClearColor(alpha * color.getRedF(), alpha * color.getGreenF(), alpha * color.getBlueF(), alpha);
+		} else {
+			GL11.glClearColor(color.getRedF(), color.getGreenF(), color.getBlueF(), color.getAlphaF());
+		}
 		GL11.glClear(GL11.GL_COLOR_BUFFER_BIT | GL11.GL_DEPTH_BUFFER_BIT);
 	}
 	
 	@Override
 	void renderNow(List<RenderCommand> renderCommands) {
+		long startTime = GLFrameProfiler.begin();
+		if (GLCommandCapture.isCapturing())
+			GLCommandCapture.beginFrame(Display.getWidth(), Display.getHeight());
 		start();
-		super.renderNow(renderCommands);
+		if (partialRedraw)
+			renderDamage(renderCommands);
+		else
+			super.renderNow(renderCommands);
 		stop();
+		GLCommandCapture.endFrame();
+		GLFrameProfiler.end(GLFrameProfiler.Phase.RENDER, startTime);
 	}
 	
-	private GuiTexture getFilledTexture(GuiColor color){
-		GuiTexture texture = colorMap.get(color);
-		if(texture == null){
-			BufferedImage image = new BufferedImage(1, 1, color.getAlphaF() == 1 ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB);
-			image.setRGB(0, 0, new Color(color.getRedF(), color.getGreenF(), color.getBlueF(), color.getAlphaF()).getRGB());
-			texture = textureLoader.loadTexture(image);
-			colorMap.put(color, texture);
+	/**
+	 * Executes the render commands that were stored in the given buffer, which may have been recorded on
+	 * another thread. The buffer must not be changed while this method is running.
+	 */
+	public void render(GLCommandBuffer buffer){
+		renderNow(buffer.getCommands());
+	}
+	
+	private void renderDamage(List<RenderCommand> renderCommands) {
+		int width = Display.getWidth();
+		int height = Display.getHeight();
+		if (backBuffer == null || backBuffer.getWidth() != width || backBuffer.getHeight() != height) {
+			if (backBuffer != null)
+				backBuffer.clean();
+			backBuffer = new GLFramebuffer(width, height);
+			damage.addAll();
+		}
+		backBuffer.bind();
+		if (damage.isFull()) {
+			super.renderNow(renderCommands);
+		} else {
+			GLStateCache.setScissorTest(true);
+			for (int region = 0; region < damage.getRegionCount(); region++) {
+				cullMinX = damage.getMinX(region);
+				cullMinY = damage.getMinY(region);
+				cullMaxX = damage.getMaxX(region);
+				cullMaxY = damage.getMaxY(region);
+				int minX = (int) Math.floor(cullMinX * width);
+				int minY = (int) Math.floor(cullMinY * height);
+				int maxX = (int) Math.ceil(cullMaxX * width);
+				int maxY = (int) Math.ceil(cullMaxY * height);
+				GLStateCache.scissor(minX, minY, maxX - minX, maxY - minY);
+				regionScissor = true;
+				clipping = false;
+				appliedClipping = false;
+				super.renderNow(renderCommands);
+				if (isBatchingFrame) {
+					// The quads of this region must be drawn before the scissor box changes
+					batch.flush();
+				}
+			}
+			GLStateCache.setScissorTest(false);
+			regionScissor = false;
+			cullMinX = 0;
+			cullMinY = 0;
+			cullMaxX = 1;
+			cullMaxY = 1;
 		}
-		return texture;
+		if (isBatchingFrame)
+			batch.flush();
+		damage.clear();
+		backBuffer.unbind();
 	}
 }
\ No newline at end of file
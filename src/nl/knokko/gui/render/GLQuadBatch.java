@@ -0,0 +1,195 @@
+/*******************************************************************************
+ * The MIT License
+ *
+ * Copyright (c) 2018 knokko
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *  
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *******************************************************************************/
+package nl.knokko.gui.render;
+
+import java.nio.FloatBuffer;
+import java.nio.ShortBuffer;
+
+import org.lwjgl.BufferUtils;
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL13;
+import org.lwjgl.opengl.GL15;
+import org.lwjgl.opengl.GL20;
+import org.lwjgl.opengl.GL30;
+
+import nl.knokko.gui.render.GLResourceTracker.Type;
+import nl.knokko.gui.shader.GuiBatchShader;
+
+/**
+ * Collects quads that use the same texture in a streaming vertex buffer so that they can be drawn with
+ * a single draw call. The batch is flushed when the texture changes, when it is full and when it is
+ * stopped. Solid color fills don't use a texture, so they never cause a flush because of a texture change.
+ */
+class GLQuadBatch {
+	
+	private static final int FLOATS_PER_VERTEX = 9;
+	private static final int FLOATS_PER_QUAD = 4 * FLOATS_PER_VERTEX;
+	private static final int INDICES_PER_QUAD = 6;
+	
+	/**
+	 * The indices are stored as unsigned shorts, so there can't be more than 65536 vertices in a batch.
+	 */
+	static final int MAX_QUADS = 16384;
+	
+	private final int capacity;
+	private final FloatBuffer vertices;
+	
+	private GuiBatchShader shader;
+	
+	private int vao;
+	private int vbo;
+	private int ebo;
+	
+	private int quadCount;
+	private int textureID;
+	private boolean hasTexture;
+	
+	GLQuadBatch(int capacity){
+		if (capacity <= 0 || capacity > MAX_QUADS)
+			throw new IllegalArgumentException("Batch capacity must be between 1 and " + MAX_QUADS + ", but is " + capacity);
+		this.capacity = capacity;
+		vertices = BufferUtils.createFloatBuffer(capacity * FLOATS_PER_QUAD);
+	}
+	
+	void init(){
+		vao = GL30.glGenVertexArrays();
+		GLResourceTracker.created(Type.VERTEX_ARRAY, vao, 0);
+		GL30.glBindVertexArray(vao);
+		vbo = GL15.glGenBuffers();
+		GLResourceTracker.created(Type.BUFFER, vbo, vertices.capacity() * 4L);
+		GLStateCache.bindArrayBuffer(vbo);
+		GL15.glBufferData(GL15.GL_ARRAY_BUFFER, vertices.capacity() * 4L, GL15.GL_STREAM_DRAW);
+		GL20.glVertexAttribPointer(GuiBatchShader.ATTRIBUTE_POSITION, 2, GL11.GL_FLOAT, false, FLOATS_PER_VERTEX * 4, 0);
+		GL20.glVertexAttribPointer(GuiBatchShader.ATTRIBUTE_TEXTURE_COORDS, 2, GL11.GL_FLOAT, false, FLOATS_PER_VERTEX * 4, 8);
+		GL20.glVertexAttribPointer(GuiBatchShader.ATTRIBUTE_COLOR, 4, GL11.GL_FLOAT, false, FLOATS_PER_VERTEX * 4, 16);
+		GL20.glVertexAttribPointer(GuiBatchShader.ATTRIBUTE_COLOR_MODE, 1, GL11.GL_FLOAT, false, FLOATS_PER_VERTEX * 4, 32);
+		GL20.glEnableVertexAttribArray(GuiBatchShader.ATTRIBUTE_POSITION);
+		GL20.glEnableVertexAttribArray(GuiBatchShader.ATTRIBUTE_TEXTURE_COORDS);
+		GL20.glEnableVertexAttribArray(GuiBatchShader.ATTRIBUTE_COLOR);
+		GL20.glEnableVertexAttribArray(GuiBatchShader.ATTRIBUTE_COLOR_MODE);
+		
+		// The vertices of every quad are in the same order as GLGuiRenderer.QUAD, so the 2 triangles
+		// are the same as the triangles of the triangle strip of the non-batched path
+		ShortBuffer indices = BufferUtils.createShortBuffer(capacity * INDICES_PER_QUAD);
+		for (int quad = 0; quad < capacity; quad++) {
+			int base = quad * 4;
+			indices.put((short) base);
+			indices.put((short) (base + 1));
+			indices.put((short) (base + 2));
+			indices.put((short) (base + 2));
+			indices.put((short) (base + 1));
+			indices.put((short) (base + 3));
+		}
+		indices.flip();
+		ebo = GL15.glGenBuffers();
+		GLResourceTracker.created(Type.BUFFER, ebo, indices.capacity() * 2L);
+		GL15.glBindBuffer(GL15.GL_ELEMENT_ARRAY_BUFFER, ebo);
+		GL15.glBufferData(GL15.GL_ELEMENT_ARRAY_BUFFER, indices, GL15.GL_STATIC_DRAW);
+		
+		// The element array buffer binding is part of the vertex array state, so unbind the vertex array first
+		GL30.glBindVertexArray(0);
+		GLStateCache.bindArrayBuffer(0);
+		GL15.glBindBuffer(GL15.GL_ELEMENT_ARRAY_BUFFER, 0);
+	}
+	
+	void start(){
+		if (shader == null)
+			shader = new GuiBatchShader();
+		shader.start();
+		GLStateCache.bindVertexArray(vao);
+		
+		// The element array buffer is only bound through the vertex array
+		GLResourceTracker.used(Type.BUFFER, ebo);
+		GLStateCache.activeTexture(GL13.GL_TEXTURE0);
+	}
+	
+	void stop(){
+		flush();
+		GLStateCache.bindVertexArray(0);
+		shader.stop();
+	}
+	
+	void add(int textureID, float minX, float minY, float maxX, float maxY, float minU, float minV, float maxU, float maxV){
+		if (quadCount > 0 && ((hasTexture && textureID != this.textureID) || quadCount == capacity))
+			flush();
+		this.textureID = textureID;
+		hasTexture = true;
+		putQuad(minX, minY, maxX, maxY, minU, minV, maxU, maxV, 0, 0, 0, 0, 0);
+	}
+	
+	void addFill(float minX, float minY, float maxX, float maxY, float red, float green, float blue, float alpha){
+		if (quadCount == capacity)
+			flush();
+		putQuad(minX, minY, maxX, maxY, 0, 0, 0, 0, red, green, blue, alpha, 1);
+	}
+	
+	private void putQuad(float minX, float minY, float maxX, float maxY, float minU, float minV, float maxU, float maxV, 
+			float red, float green, float blue, float alpha, float colorMode){
+		
+		// Use the same computations as the vertex shader of the non-batched path
+		float left = minX * 2 - 1;
+		float bottom = minY * 2 - 1;
+		float right = left + 2 * (maxX - minX);
+		float top = bottom + 2 * (maxY - minY);
+		
+		putVertex(left, top, minU, minV, red, green, blue, alpha, colorMode);
+		putVertex(left, bottom, minU, maxV, red, green, blue, alpha, colorMode);
+		putVertex(right, top, maxU, minV, red, green, blue, alpha, colorMode);
+		putVertex(right, bottom, maxU, maxV, red, green, blue, alpha, colorMode);
+		quadCount++;
+	}
+	
+	private void putVertex(float x, float y, float u, float v, float red, float green, float blue, float alpha, float colorMode){
+		vertices.put(x).put(y).put(u).put(v).put(red).put(green).put(blue).put(alpha).put(colorMode);
+	}
+	
+	void flush(){
+		if (quadCount == 0)
+			return;
+		vertices.flip();
+		GLStateCache.bindArrayBuffer(vbo);
+		
+		// Orphan the old storage so that we don't have to wait until the previous draw call is finished
+		GL15.glBufferData(GL15.GL_ARRAY_BUFFER, vertices.capacity() * 4L, GL15.GL_STREAM_DRAW);
+		GL15.glBufferSubData(GL15.GL_ARRAY_BUFFER, 0, vertices);
+		GLFrameProfiler.count(GLFrameProfiler.Counter.BUFFER_UPLOADS);
+		if (hasTexture)
+			GLStateCache.bindTexture(textureID);
+		GL11.glDrawElements(GL11.GL_TRIANGLES, quadCount * INDICES_PER_QUAD, GL11.GL_UNSIGNED_SHORT, 0);
+		GLFrameProfiler.count(GLFrameProfiler.Counter.DRAW_CALLS);
+		vertices.clear();
+		quadCount = 0;
+		hasTexture = false;
+	}
+	
+	void clean(){
+		GL30.glDeleteVertexArrays(vao);
+		GLResourceTracker.deleted(Type.VERTEX_ARRAY, vao);
+		GLStateCache.deleteArrayBuffer(vbo);
+		GL15.glDeleteBuffers(ebo);
+		GLResourceTracker.deleted(Type.BUFFER, ebo);
+		if (shader != null)
+			shader.clean();
+	}
+}
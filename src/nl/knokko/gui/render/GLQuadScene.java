@@ -0,0 +1,606 @@
+/*******************************************************************************
+ * The MIT License
+ *
+ * Copyright (c) 2018 knokko
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *  
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *******************************************************************************/
+package nl.knokko.gui.render;
+
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.lwjgl.BufferUtils;
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL13;
+import org.lwjgl.opengl.GL15;
+import org.lwjgl.opengl.GL20;
+import org.lwjgl.opengl.GL30;
+
+import nl.knokko.gui.color.GuiColor;
+import nl.knokko.gui.render.GLResourceTracker.Type;
+import nl.knokko.gui.shader.GuiBatchShader;
+import nl.knokko.gui.shader.GuiSceneShader;
+import nl.knokko.gui.texture.GLManagedGuiTexture;
+import nl.knokko.gui.texture.GLPartGuiTexture;
+import nl.knokko.gui.texture.GuiTexture;
+import nl.knokko.gui.texture.loader.GLGuiTextureLoader;
+
+/**
+ * A set of quads that is kept in a vertex buffer on the GPU between frames. Components add their quads once
+ * and only change the quads that need to change:
+ * 
+ * GLQuadScene scene = new GLQuadScene();
+ * GLQuadScene.Quad background = scene.addFill(color, 0, 0, 1, 1);
+ * GLQuadScene.Quad icon = scene.addTexture(texture, 0.1f, 0.1f, 0.3f, 0.3f);
+ * ...
+ * icon.setBounds(0.2f, 0.1f, 0.4f, 0.3f);
+ * ...
+ * scene.render(renderer, minX, minY, maxX, maxY);
+ * 
+ * Only the quads that changed since the previous frame are uploaded, with a glBufferSubData call per range
+ * of changed quads. The quads are drawn in the order they were added, with a draw call per run of quads that
+ * use the same texture. So the cost of a frame depends on the number of changes and textures rather than on
+ * the number of quads, especially when the textures are in the same texture atlas.
+ * 
+ * The coordinates of the quads are relative to the area the scene is rendered in, so moving the whole scene
+ * is free. Scenes can only be drawn by a GLGuiRenderer or one of its layers, and they are drawn in the state
+ * they have when the render command is executed. In partial redraw mode, changes of the scene must be reported
+ * to the damage tracker like all other changes. The methods of a scene are synchronized, so quads can be
+ * changed on the update thread in pipelined mode. Call clean() on the render thread when the scene won't be
+ * used anymore.
+ */
+public class GLQuadScene {
+	
+	private static final int FLOATS_PER_VERTEX = 9;
+	private static final int FLOATS_PER_QUAD = 4 * FLOATS_PER_VERTEX;
+	private static final int INDICES_PER_QUAD = 6;
+	
+	private static final int INITIAL_CAPACITY = 256;
+	
+	/**
+	 * Changed quads that are at most this many quads apart are uploaded with a single glBufferSubData call
+	 */
+	private static final int UPLOAD_GAP = 16;
+	
+	private final SceneTexture texture;
+	
+	// The quads and their vertices in drawing order. Removed quads leave an empty slot with degenerate
+	// vertices until the scene is compacted.
+	private Quad[] quads;
+	private float[] vertices;
+	private int slotCount;
+	private int removedCount;
+	
+	private final BitSet changedSlots;
+	private boolean runsChanged;
+	
+	// Quads whose texture hasn't been uploaded yet, they are degenerate until it has been uploaded
+	private final List<Quad> pendingQuads;
+	
+	// The runs of consecutive quads that can be drawn with a single draw call
+	private int runCount;
+	private int[] runStarts;
+	private int[] runBounds;
+	private GuiTexture[] runTextures;
+	private int[] runTextureIDs;
+	private final List<GLManagedGuiTexture> managedTextures;
+	
+	private int vao;
+	private int vbo;
+	private int ebo;
+	private int bufferCapacity;
+	private FloatBuffer uploadBuffer;
+	
+	public GLQuadScene(){
+		texture = new SceneTexture(this);
+		quads = new Quad[INITIAL_CAPACITY];
+		vertices = new float[INITIAL_CAPACITY * FLOATS_PER_QUAD];
+		changedSlots = new BitSet(INITIAL_CAPACITY);
+		pendingQuads = new ArrayList<Quad>();
+		runStarts = new int[INITIAL_CAPACITY];
+		runBounds = new int[INITIAL_CAPACITY];
+		runTextures = new GuiTexture[INITIAL_CAPACITY];
+		runTextureIDs = new int[INITIAL_CAPACITY];
+		managedTextures = new ArrayList<GLManagedGuiTexture>();
+	}
+	
+	/**
+	 * Adds a quad that shows the given texture. It will be drawn on top of the quads that were added earlier.
+	 */
+	public synchronized Quad addTexture(GuiTexture texture, float minX, float minY, float maxX, float maxY){
+		if (texture == null)
+			throw new IllegalArgumentException("texture is null");
+		Quad quad = add(minX, minY, maxX, maxY);
+		quad.texture = texture;
+		write(quad);
+		return quad;
+	}
+	
+	/**
+	 * Adds a quad that is filled with the given color. It will be drawn on top of the quads that were added
+	 * earlier.
+	 */
+	public synchronized Quad addFill(GuiColor color, float minX, float minY, float maxX, float maxY){
+		Quad quad = add(minX, minY, maxX, maxY);
+		quad.setColorComponents(color);
+		write(quad);
+		return quad;
+	}
+	
+	/**
+	 * Removes all quads from this scene.
+	 */
+	public synchronized void clear(){
+		for (int slot = 0; slot < slotCount; slot++) {
+			if (quads[slot] != null) {
+				quads[slot].slot = -1;
+				quads[slot] = null;
+			}
+		}
+		slotCount = 0;
+		removedCount = 0;
+		pendingQuads.clear();
+		changedSlots.clear();
+		runsChanged = true;
+	}
+	
+	/**
+	 * @return The number of quads in this scene
+	 */
+	public synchronized int getQuadCount(){
+		return slotCount - removedCount;
+	}
+	
+	/**
+	 * Lets the given renderer draw this scene in the given area. The coordinates of the quads of this scene
+	 * are relative to that area.
+	 */
+	public void render(GuiRenderer renderer, float minX, float minY, float maxX, float maxY){
+		renderer.renderTexture(texture, minX, minY, maxX, maxY);
+	}
+	
+	/**
+	 * Deletes the buffers of this scene. The scene can still be used after this, but it will need to upload
+	 * all quads again.
+	 */
+	public synchronized void clean(){
+		if (vao != 0) {
+			
+			// Keep the state cache consistent, a new vertex array could get the same id
+			GLStateCache.bindVertexArray(0);
+			GL30.glDeleteVertexArrays(vao);
+			GLResourceTracker.deleted(Type.VERTEX_ARRAY, vao);
+			GLStateCache.deleteArrayBuffer(vbo);
+			GL15.glDeleteBuffers(ebo);
+			GLResourceTracker.deleted(Type.BUFFER, ebo);
+			vao = 0;
+			vbo = 0;
+			ebo = 0;
+			bufferCapacity = 0;
+			uploadBuffer = null;
+		}
+	}
+	
+	private Quad add(float minX, float minY, float maxX, float maxY){
+		if (slotCount == quads.length) {
+			if (removedCount >= quads.length / 4)
+				compact();
+			else
+				grow();
+		}
+		Quad quad = new Quad(slotCount);
+		quads[slotCount++] = quad;
+		quad.minX = minX;
+		quad.minY = minY;
+		quad.maxX = maxX;
+		quad.maxY = maxY;
+		runsChanged = true;
+		return quad;
+	}
+	
+	private void remove(Quad quad){
+		int slot = quad.slot;
+		quads[slot] = null;
+		quad.slot = -1;
+		if (quad.pending) {
+			quad.pending = false;
+			pendingQuads.remove(quad);
+		}
+		Arrays.fill(vertices, slot * FLOATS_PER_QUAD, (slot + 1) * FLOATS_PER_QUAD, 0);
+		changedSlots.set(slot);
+		runsChanged = true;
+		if (slot == slotCount - 1)
+			slotCount--;
+		else
+			removedCount++;
+	}
+	
+	/**
+	 * Moves the quads to the front, so the slots of the removed quads can be used again
+	 */
+	private void compact(){
+		int target = 0;
+		for (int slot = 0; slot < slotCount; slot++) {
+			Quad quad = quads[slot];
+			if (quad != null) {
+				if (target != slot) {
+					quads[target] = quad;
+					quad.slot = target;
+					System.arraycopy(vertices, slot * FLOATS_PER_QUAD, vertices, target * FLOATS_PER_QUAD, FLOATS_PER_QUAD);
+				}
+				target++;
+			}
+		}
+		Arrays.fill(quads, target, slotCount, null);
+		slotCount = target;
+		removedCount = 0;
+		changedSlots.set(0, slotCount);
+		runsChanged = true;
+	}
+	
+	private void grow(){
+		int capacity = quads.length * 2;
+		quads = Arrays.copyOf(quads, capacity);
+		vertices = Arrays.copyOf(vertices, capacity * FLOATS_PER_QUAD);
+		runStarts = new int[capacity];
+		runBounds = new int[capacity];
+		runTextures = new GuiTexture[capacity];
+		runTextureIDs = new int[capacity];
+		runsChanged = true;
+	}
+	
+	/**
+	 * Writes the vertices of the given quad in the same way as the GLQuadBatch does.
+	 */
+	private void write(Quad quad){
+		int index = quad.slot * FLOATS_PER_QUAD;
+		changedSlots.set(quad.slot);
+		if (quad.texture != null && quad.texture.getTextureID() == 0) {
+			
+			// The texture is still being loaded, so draw nothing until it is available
+			Arrays.fill(vertices, index, index + FLOATS_PER_QUAD, 0);
+			if (!quad.pending) {
+				quad.pending = true;
+				pendingQuads.add(quad);
+			}
+			return;
+		}
+		float minU = 0, minV = 0, maxU = 0, maxV = 0, colorMode = 1;
+		if (quad.texture != null) {
+			minU = quad.texture.getMinU();
+			minV = quad.texture.getMinV();
+			maxU = quad.texture.getMaxU();
+			maxV = quad.texture.getMaxV();
+			colorMode = 0;
+		}
+		index = putVertex(index, quad.minX, quad.maxY, minU, minV, quad, colorMode);
+		index = putVertex(index, quad.minX, quad.minY, minU, maxV, quad, colorMode);
+		index = putVertex(index, quad.maxX, quad.maxY, maxU, minV, quad, colorMode);
+		putVertex(index, quad.maxX, quad.minY, maxU, maxV, quad, colorMode);
+	}
+	
+	private int putVertex(int index, float x, float y, float u, float v, Quad quad, float colorMode){
+		vertices[index++] = x;
+		vertices[index++] = y;
+		vertices[index++] = u;
+		vertices[index++] = v;
+		vertices[index++] = quad.red;
+		vertices[index++] = quad.green;
+		vertices[index++] = quad.blue;
+		vertices[index++] = quad.alpha;
+		vertices[index++] = colorMode;
+		return index;
+	}
+	
+	/**
+	 * Splits the quads into runs that can be drawn with a single draw call. Fills, removed quads and pending
+	 * quads don't need a texture, so they can join any run. Managed textures are prepared first, because an
+	 * evicted texture has texture id 0 until it has been uploaded again.
+	 */
+	private void updateRuns(GLGuiTextureLoader loader){
+		runCount = 0;
+		Map<GLManagedGuiTexture,Boolean> managed = new IdentityHashMap<GLManagedGuiTexture,Boolean>();
+		for (int slot = 0; slot < slotCount; slot++) {
+			Quad quad = quads[slot];
+			boolean textured = quad != null && quad.texture != null && !quad.pending;
+			int textureID = 0;
+			if (textured) {
+				if (quad.texture instanceof GLManagedGuiTexture && managed.put((GLManagedGuiTexture) quad.texture, Boolean.TRUE) == null)
+					loader.prepareTexture((GLManagedGuiTexture) quad.texture);
+				textureID = quad.texture.getTextureID();
+			}
+			
+			// A texture that couldn't be reloaded has texture id 0, it gets its own run that won't be drawn
+			boolean runTextured = runCount > 0 && runTextures[runCount - 1] != null;
+			boolean skippedRun = runTextured && runTextureIDs[runCount - 1] == 0;
+			if (runCount == 0 || skippedRun || (textured && textureID == 0) 
+					|| (textured && runTextured && textureID != runTextureIDs[runCount - 1])) {
+				runStarts[runCount] = slot;
+				runTextures[runCount] = null;
+				runTextured = false;
+				runCount++;
+			}
+			if (textured && !runTextured) {
+				runTextures[runCount - 1] = quad.texture;
+				runTextureIDs[runCount - 1] = textureID;
+			}
+			runBounds[runCount - 1] = slot + 1;
+		}
+		Arrays.fill(runTextures, runCount, runTextures.length, null);
+		managedTextures.clear();
+		managedTextures.addAll(managed.keySet());
+		runsChanged = false;
+	}
+	
+	private void createBuffers(){
+		bufferCapacity = quads.length;
+		vao = GL30.glGenVertexArrays();
+		GLResourceTracker.created(Type.VERTEX_ARRAY, vao, 0);
+		GLStateCache.bindVertexArray(vao);
+		vbo = GL15.glGenBuffers();
+		GLResourceTracker.created(Type.BUFFER, vbo, bufferCapacity * FLOATS_PER_QUAD * 4L);
+		GLStateCache.bindArrayBuffer(vbo);
+		GL15.glBufferData(GL15.GL_ARRAY_BUFFER, bufferCapacity * FLOATS_PER_QUAD * 4L, GL15.GL_DYNAMIC_DRAW);
+		
+		// The scene shader has the same attributes as the batch shader
+		GL20.glVertexAttribPointer(GuiBatchShader.ATTRIBUTE_POSITION, 2, GL11.GL_FLOAT, false, FLOATS_PER_VERTEX * 4, 0);
+		GL20.glVertexAttribPointer(GuiBatchShader.ATTRIBUTE_TEXTURE_COORDS, 2, GL11.GL_FLOAT, false, FLOATS_PER_VERTEX * 4, 8);
+		GL20.glVertexAttribPointer(GuiBatchShader.ATTRIBUTE_COLOR, 4, GL11.GL_FLOAT, false, FLOATS_PER_VERTEX * 4, 16);
+		GL20.glVertexAttribPointer(GuiBatchShader.ATTRIBUTE_COLOR_MODE, 1, GL11.GL_FLOAT, false, FLOATS_PER_VERTEX * 4, 32);
+		GL20.glEnableVertexAttribArray(GuiBatchShader.ATTRIBUTE_POSITION);
+		GL20.glEnableVertexAttribArray(GuiBatchShader.ATTRIBUTE_TEXTURE_COORDS);
+		GL20.glEnableVertexAttribArray(GuiBatchShader.ATTRIBUTE_COLOR);
+		GL20.glEnableVertexAttribArray(GuiBatchShader.ATTRIBUTE_COLOR_MODE);
+		
+		// Scenes can be bigger than a batch, so the indices are stored as unsigned ints
+		IntBuffer indices = BufferUtils.createIntBuffer(bufferCapacity * INDICES_PER_QUAD);
+		for (int quad = 0; quad < bufferCapacity; quad++) {
+			int base = quad * 4;
+			indices.put(base).put(base + 1).put(base + 2);
+			indices.put(base + 2).put(base + 1).put(base + 3);
+		}
+		indices.flip();
+		ebo = GL15.glGenBuffers();
+		GLResourceTracker.created(Type.BUFFER, ebo, indices.capacity() * 4L);
+		
+		// The element array buffer binding is part of the state of the bound vertex array
+		GL15.glBindBuffer(GL15.GL_ELEMENT_ARRAY_BUFFER, ebo);
+		GL15.glBufferData(GL15.GL_ELEMENT_ARRAY_BUFFER, indices, GL15.GL_STATIC_DRAW);
+		uploadBuffer = BufferUtils.createFloatBuffer(bufferCapacity * FLOATS_PER_QUAD);
+		changedSlots.set(0, slotCount);
+	}
+	
+	/**
+	 * Uploads the changed quads with a glBufferSubData call per range of changed quads.
+	 */
+	private void uploadChanges(){
+		GLStateCache.bindArrayBuffer(vbo);
+		int start = changedSlots.nextSetBit(0);
+		while (start != -1 && start < slotCount) {
+			int bound = changedSlots.nextClearBit(start);
+			int next = changedSlots.nextSetBit(bound);
+			while (next != -1 && next - bound <= UPLOAD_GAP) {
+				bound = changedSlots.nextClearBit(next);
+				next = changedSlots.nextSetBit(bound);
+			}
+			bound = Math.min(bound, slotCount);
+			uploadBuffer.clear();
+			uploadBuffer.put(vertices, start * FLOATS_PER_QUAD, (bound - start) * FLOATS_PER_QUAD);
+			uploadBuffer.flip();
+			GL15.glBufferSubData(GL15.GL_ARRAY_BUFFER, start * FLOATS_PER_QUAD * 4L, uploadBuffer);
+			GLFrameProfiler.count(GLFrameProfiler.Counter.BUFFER_UPLOADS);
+			start = next;
+		}
+		changedSlots.clear();
+	}
+	
+	/**
+	 * Draws this scene in the given area. The GLGuiRenderer calls this while it is rendering, after it has
+	 * drawn the quads that came before this scene.
+	 */
+	synchronized void draw(GuiSceneShader shader, GLGuiTextureLoader loader, float minX, float minY, float maxX, float maxY){
+		for (int index = pendingQuads.size() - 1; index >= 0; index--) {
+			Quad quad = pendingQuads.get(index);
+			if (quad.texture instanceof GLManagedGuiTexture)
+				loader.prepareTexture((GLManagedGuiTexture) quad.texture);
+			if (quad.texture.getTextureID() != 0) {
+				quad.pending = false;
+				pendingQuads.remove(index);
+				write(quad);
+				runsChanged = true;
+			}
+		}
+		
+		// Reloading an evicted texture gives it a new texture id, so its runs need to be computed again
+		for (GLManagedGuiTexture managed : managedTextures)
+			loader.prepareTexture(managed);
+		for (int run = 0; run < runCount && !runsChanged; run++) {
+			if (runTextures[run] != null && runTextures[run].getTextureID() != runTextureIDs[run])
+				runsChanged = true;
+		}
+		if (runsChanged)
+			updateRuns(loader);
+		
+		if (bufferCapacity < quads.length) {
+			clean();
+			createBuffers();
+		} else {
+			GLStateCache.bindVertexArray(vao);
+		}
+		
+		// The buffers are only bound through the vertex array when no quads changed
+		GLResourceTracker.used(Type.BUFFER, vbo);
+		GLResourceTracker.used(Type.BUFFER, ebo);
+		if (!changedSlots.isEmpty())
+			uploadChanges();
+		
+		shader.start();
+		shader.loadArea(minX * 2 - 1, minY * 2 - 1, 2 * (maxX - minX), 2 * (maxY - minY));
+		GLStateCache.activeTexture(GL13.GL_TEXTURE0);
+		for (int run = 0; run < runCount; run++) {
+			GuiTexture runTexture = runTextures[run];
+			if (runTexture != null) {
+				int textureID = runTexture.getTextureID();
+				if (textureID == 0)
+					continue;
+				GLStateCache.bindTexture(textureID);
+			}
+			GL11.glDrawElements(GL11.GL_TRIANGLES, (runBounds[run] - runStarts[run]) * INDICES_PER_QUAD, GL11.GL_UNSIGNED_INT, 
+					runStarts[run] * INDICES_PER_QUAD * 4L);
+			GLFrameProfiler.count(GLFrameProfiler.Counter.DRAW_CALLS);
+		}
+	}
+	
+	/**
+	 * Records the quads of this scene as separate draws and fills for the GLCommandCapture.
+	 */
+	synchronized void capture(float minX, float minY, float maxX, float maxY){
+		float width = maxX - minX;
+		float height = maxY - minY;
+		for (int slot = 0; slot < slotCount; slot++) {
+			Quad quad = quads[slot];
+			if (quad == null || quad.pending)
+				continue;
+			float quadMinX = minX + quad.minX * width;
+			float quadMinY = minY + quad.minY * height;
+			float quadMaxX = minX + quad.maxX * width;
+			float quadMaxY = minY + quad.maxY * height;
+			if (quad.texture != null) {
+				GLCommandCapture.draw(quad.texture.getTextureID(), quadMinX, quadMinY, quadMaxX, quadMaxY, 
+						quad.texture.getMinU(), quad.texture.getMinV(), quad.texture.getMaxU(), quad.texture.getMaxV());
+			} else {
+				GLCommandCapture.fill(quad.red, quad.green, quad.blue, quad.alpha, quadMinX, quadMinY, quadMaxX, quadMaxY);
+			}
+		}
+	}
+	
+	/**
+	 * A quad of a GLQuadScene. All changes are uploaded at the next frame.
+	 */
+	public class Quad {
+		
+		private int slot;
+		private boolean pending;
+		
+		private GuiTexture texture;
+		private float minX, minY, maxX, maxY;
+		private float red, green, blue, alpha;
+		
+		private Quad(int slot){
+			this.slot = slot;
+		}
+		
+		public void setBounds(float minX, float minY, float maxX, float maxY){
+			synchronized (GLQuadScene.this) {
+				checkInScene();
+				if (minX != this.minX || minY != this.minY || maxX != this.maxX || maxY != this.maxY) {
+					this.minX = minX;
+					this.minY = minY;
+					this.maxX = maxX;
+					this.maxY = maxY;
+					write(this);
+				}
+			}
+		}
+		
+		/**
+		 * Lets this quad show the given texture instead of its current texture or color.
+		 */
+		public void setTexture(GuiTexture texture){
+			if (texture == null)
+				throw new IllegalArgumentException("texture is null");
+			synchronized (GLQuadScene.this) {
+				checkInScene();
+				if (texture != this.texture) {
+					this.texture = texture;
+					runsChanged = true;
+					write(this);
+				}
+			}
+		}
+		
+		/**
+		 * Lets this quad be filled with the given color instead of its current texture or color.
+		 */
+		public void setColor(GuiColor color){
+			synchronized (GLQuadScene.this) {
+				checkInScene();
+				if (texture != null) {
+					texture = null;
+					runsChanged = true;
+					if (pending) {
+						pending = false;
+						pendingQuads.remove(this);
+					}
+				}
+				setColorComponents(color);
+				write(this);
+			}
+		}
+		
+		/**
+		 * Removes this quad from its scene. It can't be used anymore after this.
+		 */
+		public void remove(){
+			synchronized (GLQuadScene.this) {
+				checkInScene();
+				GLQuadScene.this.remove(this);
+			}
+		}
+		
+		public boolean isRemoved(){
+			synchronized (GLQuadScene.this) {
+				return slot == -1;
+			}
+		}
+		
+		private void setColorComponents(GuiColor color){
+			red = color.getRedF();
+			green = color.getGreenF();
+			blue = color.getBlueF();
+			alpha = color.getAlphaF();
+		}
+		
+		private void checkInScene(){
+			if (slot == -1)
+				throw new IllegalStateException("This quad has been removed from its scene");
+		}
+	}
+	
+	/**
+	 * The texture that is passed to GuiRenderer.renderTexture to draw a scene. It doesn't have any pixels, the
+	 * GLGuiRenderer recognizes it and draws the scene instead.
+	 */
+	static class SceneTexture extends GLPartGuiTexture {
+		
+		final GLQuadScene scene;
+		
+		SceneTexture(GLQuadScene scene){
+			super(0, 0, 0, 1, 1, 1, 1);
+			this.scene = scene;
+		}
+	}
+}
@@ -0,0 +1,177 @@
+/*******************************************************************************
+ * The MIT License
+ *
+ * Copyright (c) 2018 knokko
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *  
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *******************************************************************************/
+package nl.knokko.gui.render;
+
+import java.util.List;
+
+import nl.knokko.gui.color.GuiColor;
+import nl.knokko.gui.texture.GLPartGuiTexture;
+import nl.knokko.gui.texture.GuiTexture;
+
+/**
+ * A part of the window whose render commands are rendered once into a framebuffer and then drawn as a single
+ * quad every frame until the layer is invalidated. Layers are obtained with GLGuiRenderer.getLayer and should
+ * be used like this:
+ * 
+ * GLRenderLayer layer = renderer.getLayer(panel, minX, minY, maxX, maxY);
+ * if (!layer.isValid())
+ *     panel.render(layer);
+ * layer.composite();
+ * 
+ * The layer is invalidated when invalidate() is called, when its size in pixels changes and when the renderer
+ * evicts it to stay within its layer budget.
+ * 
+ * The framebuffer contains premultiplied colors, so that transparent parts of the layer look the same as
+ * they would look without layer.
+ */
+public class GLRenderLayer extends GuiRenderer {
+	
+	private final GLGuiRenderer parent;
+	
+	private float minX, minY, maxX, maxY;
+	private int width, height;
+	
+	private GLFramebuffer framebuffer;
+	private LayerTexture texture;
+	private boolean valid;
+	
+	private int lastUsedFrame;
+	
+	GLRenderLayer(GLGuiRenderer parent){
+		this.parent = parent;
+	}
+	
+	/**
+	 * Sets the part of the window this layer covers, and invalidates it if its size in pixels changed.
+	 */
+	void setArea(float minX, float minY, float maxX, float maxY, int width, int height){
+		this.minX = minX;
+		this.minY = minY;
+		this.maxX = maxX;
+		this.maxY = maxY;
+		if (width != this.width || height != this.height) {
+			release();
+			this.width = width;
+			this.height = height;
+		}
+	}
+	
+	int getLastUsedFrame(){
+		return lastUsedFrame;
+	}
+	
+	void setLastUsedFrame(int frame){
+		lastUsedFrame = frame;
+	}
+	
+	/**
+	 * @return The estimated amount of video memory used by the framebuffer of this layer
+	 */
+	long getByteSize(){
+		return framebuffer == null ? 0 : width * (long) height * 4;
+	}
+	
+	/**
+	 * @return true if the framebuffer contains the current contents of this layer, in which case nothing
+	 * needs to be rendered on this layer before calling composite()
+	 */
+	public boolean isValid(){
+		return valid;
+	}
+	
+	/**
+	 * Marks the contents of this layer as outdated, so they will be rendered again.
+	 */
+	public void invalidate(){
+		valid = false;
+	}
+	
+	/**
+	 * Renders the commands that were given to this layer into its framebuffer if it is not valid, and draws
+	 * the framebuffer on the parent renderer. This must be called on the OpenGL thread.
+	 * @throws IllegalStateException If this is called on another thread
+	 */
+	public void composite(){
+		parent.checkLayerThread();
+		if (!valid)
+			maybeRenderNow();
+		if (texture != null)
+			parent.renderTexture(texture, minX, minY, maxX, maxY);
+	}
+	
+	/**
+	 * Deletes the framebuffer of this layer and invalidates it.
+	 */
+	void release(){
+		if (framebuffer != null) {
+			framebuffer.clean();
+			framebuffer = null;
+			texture = null;
+		}
+		valid = false;
+	}
+
+	@Override
+	public GuiRenderer getArea(float minX, float minY, float maxX, float maxY) {
+		return new GLClipRenderer(this, minX, minY, maxX, maxY);
+	}
+
+	@Override
+	void renderTextureNow(GuiTexture texture, float minX, float minY, float maxX, float maxY) {
+		parent.renderTextureNow(texture, minX, minY, maxX, maxY);
+	}
+
+	@Override
+	void fillNow(GuiColor color, float minX, float minY, float maxX, float maxY) {
+		parent.fillNow(color, minX, minY, maxX, maxY);
+	}
+
+	@Override
+	void clearNow(GuiColor color) {
+		parent.clearNow(color);
+	}
+	
+	@Override
+	void renderNow(List<RenderCommand> renderCommands) {
+		if (framebuffer == null) {
+			parent.allocateLayer(this, width * (long) height * 4);
+			framebuffer = new GLFramebuffer(width, height);
+			texture = new LayerTexture(framebuffer.getTextureID(), width, height);
+		}
+		parent.startLayer(framebuffer);
+		super.renderNow(renderCommands);
+		parent.stopLayer(framebuffer);
+		valid = true;
+	}
+	
+	/**
+	 * The color texture of a layer. The rows of a framebuffer start at the bottom, so the v coordinates are flipped.
+	 */
+	static class LayerTexture extends GLPartGuiTexture {
+		
+		LayerTexture(int textureID, int width, int height){
+			super(textureID, 0, 1, 1, 0, width, height);
+		}
+	}
+}
@@ -0,0 +1,360 @@
+/*******************************************************************************
+ * The MIT License
+ *
+ * Copyright (c) 2018 knokko
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *  
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *******************************************************************************/
+package nl.knokko.gui.render;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+/**
+ * Keeps track of the OpenGL objects that are created by the GLGuiRenderer, the gui shaders and the
+ * GLGuiTextureLoader: their estimated size, the stack trace of their creation and the last frame in which
+ * they were bound. Tracking is disabled by default, in which case all methods of this class return
+ * immediately. It should be enabled before the window is opened, because objects that were created while
+ * tracking was disabled are unknown to the tracker.
+ */
+public class GLResourceTracker {
+	
+	public static enum Type {
+		TEXTURE,
+		BUFFER,
+		VERTEX_ARRAY,
+		SHADER,
+		PROGRAM,
+		FRAMEBUFFER
+	}
+	
+	/**
+	 * The maximum number of stack trace elements that will be printed per object in a leak report
+	 */
+	private static final int REPORT_STACK_DEPTH = 8;
+	
+	private static final Map<Long,Resource> RESOURCES = new HashMap<Long,Resource>();
+	private static final int[] COUNTS = new int[Type.values().length];
+	private static final long[] BYTES = new long[Type.values().length];
+	
+	private static volatile boolean enabled;
+	private static volatile int frame;
+	
+	private static ObjectName mbeanName;
+	
+	public static void setEnabled(boolean enabled){
+		GLResourceTracker.enabled = enabled;
+	}
+	
+	public static boolean isEnabled(){
+		return enabled;
+	}
+	
+	/**
+	 * Starts a new frame. The GLGuiRenderer calls this when it starts rendering.
+	 */
+	public static void nextFrame(){
+		if (enabled)
+			frame++;
+	}
+	
+	public static int getFrame(){
+		return frame;
+	}
+	
+	private static long key(Type type, int id){
+		return ((long) type.ordinal() << 32) | (id & 0xFFFFFFFFL);
+	}
+	
+	/**
+	 * Should be called right after an OpenGL object has been created.
+	 * @param byteSize The estimated amount of video memory used by the object
+	 */
+	public static void created(Type type, int id, long byteSize){
+		if (!enabled)
+			return;
+		StackTraceElement[] stackTrace = new Throwable().getStackTrace();
+		
+		// The first element is this method, which is not interesting
+		StackTraceElement[] creationSite = Arrays.copyOfRange(stackTrace, 1, stackTrace.length);
+		synchronized (RESOURCES) {
+			Resource old = RESOURCES.put(key(type, id), new Resource(type, id, byteSize, creationSite, frame));
+			if (old != null) {
+				
+				// The previous object with this id must have been deleted without telling the tracker
+				COUNTS[type.ordinal()]--;
+				BYTES[type.ordinal()] -= old.byteSize;
+			}
+			COUNTS[type.ordinal()]++;
+			BYTES[type.ordinal()] += byteSize;
+		}
+	}
+	
+	/**
+	 * Should be called when the storage of an existing OpenGL object is reallocated, for instance by glBufferData.
+	 */
+	public static void setByteSize(Type type, int id, long byteSize){
+		if (!enabled)
+			return;
+		synchronized (RESOURCES) {
+			Resource resource = RESOURCES.get(key(type, id));
+			if (resource != null) {
+				BYTES[type.ordinal()] += byteSize - resource.byteSize;
+				resource.byteSize = byteSize;
+			}
+		}
+	}
+	
+	/**
+	 * Should be called whenever an OpenGL object is bound. GLStateCache does this for the objects it binds.
+	 */
+	public static void used(Type type, int id){
+		if (!enabled || id == 0)
+			return;
+		synchronized (RESOURCES) {
+			Resource resource = RESOURCES.get(key(type, id));
+			if (resource != null)
+				resource.lastUseFrame = frame;
+		}
+	}
+	
+	/**
+	 * Should be called right before or after an OpenGL object is deleted.
+	 */
+	public static void deleted(Type type, int id){
+		if (!enabled)
+			return;
+		synchronized (RESOURCES) {
+			Resource resource = RESOURCES.remove(key(type, id));
+			if (resource != null) {
+				COUNTS[type.ordinal()]--;
+				BYTES[type.ordinal()] -= resource.byteSize;
+			}
+		}
+	}
+	
+	/**
+	 * @return The number of tracked objects of the given type that currently exist
+	 */
+	public static int getCount(Type type){
+		synchronized (RESOURCES) {
+			return COUNTS[type.ordinal()];
+		}
+	}
+	
+	/**
+	 * @return The estimated amount of video memory used by the tracked objects of the given type
+	 */
+	public static long getByteSize(Type type){
+		synchronized (RESOURCES) {
+			return BYTES[type.ordinal()];
+		}
+	}
+	
+	/**
+	 * @return A snapshot of all tracked objects that currently exist
+	 */
+	public static List<Resource> getResources(){
+		return getUnusedResources(0);
+	}
+	
+	/**
+	 * @return A snapshot of all tracked objects that haven't been bound during the last frames
+	 */
+	public static List<Resource> getUnusedResources(int frames){
+		List<Resource> result = new ArrayList<Resource>();
+		synchronized (RESOURCES) {
+			for (Resource resource : RESOURCES.values())
+				if (frame - resource.getLastUseFrame() >= frames)
+					result.add(resource.copy());
+		}
+		return result;
+	}
+	
+	/**
+	 * Prints all tracked objects that haven't been bound during the last frames, together with the stack trace
+	 * of their creation. Objects that are only bound occasionally, like the textures of components that are
+	 * not always visible, will show up as well, so the report should be read as a list of suspects.
+	 */
+	public static void printLeakReport(PrintStream output, int frames){
+		List<Resource> unused = getUnusedResources(frames);
+		output.println(unused.size() + " OpenGL objects haven't been used for " + frames + " frames:");
+		for (Resource resource : unused) {
+			output.println(resource);
+			StackTraceElement[] creationSite = resource.getCreationSite();
+			for (int index = 0; index < creationSite.length && index < REPORT_STACK_DEPTH; index++)
+				output.println("\tat " + creationSite[index]);
+		}
+	}
+	
+	/**
+	 * Registers the tracker as MBean with name nl.knokko.gui:type=GLResourceTracker at the platform MBean server.
+	 */
+	public static synchronized void registerMBean() throws JMException {
+		if (mbeanName == null) {
+			ObjectName name = new ObjectName("nl.knokko.gui:type=GLResourceTracker");
+			ManagementFactory.getPlatformMBeanServer().registerMBean(new StandardMBean(new MBean(), GLResourceTrackerMBean.class), name);
+			mbeanName = name;
+		}
+	}
+	
+	public static synchronized void unregisterMBean() throws JMException {
+		if (mbeanName != null) {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			server.unregisterMBean(mbeanName);
+			mbeanName = null;
+		}
+	}
+	
+	public static class Resource {
+		
+		private final Type type;
+		private final int id;
+		private final StackTraceElement[] creationSite;
+		private final int creationFrame;
+		
+		private long byteSize;
+		private int lastUseFrame;
+		
+		private Resource(Type type, int id, long byteSize, StackTraceElement[] creationSite, int creationFrame){
+			this.type = type;
+			this.id = id;
+			this.byteSize = byteSize;
+			this.creationSite = creationSite;
+			this.creationFrame = creationFrame;
+			this.lastUseFrame = creationFrame;
+		}
+		
+		private Resource copy(){
+			Resource copy = new Resource(type, id, byteSize, creationSite, creationFrame);
+			copy.lastUseFrame = lastUseFrame;
+			return copy;
+		}
+		
+		public Type getType(){
+			return type;
+		}
+		
+		public int getID(){
+			return id;
+		}
+		
+		public long getByteSize(){
+			return byteSize;
+		}
+		
+		/**
+		 * @return The stack trace of the code that created this object
+		 */
+		public StackTraceElement[] getCreationSite(){
+			return creationSite.clone();
+		}
+		
+		public int getCreationFrame(){
+			return creationFrame;
+		}
+		
+		/**
+		 * @return The last frame in which this object was bound, or the frame it was created in if it was never bound
+		 */
+		public int getLastUseFrame(){
+			return lastUseFrame;
+		}
+		
+		@Override
+		public String toString(){
+			return type + " " + id + " (" + byteSize + " bytes, created in frame " + creationFrame + ", last used in frame " + lastUseFrame + ")";
+		}
+	}
+	
+	private static class MBean implements GLResourceTrackerMBean {
+
+		@Override
+		public boolean isEnabled() {
+			return GLResourceTracker.isEnabled();
+		}
+
+		@Override
+		public void setEnabled(boolean enabled) {
+			GLResourceTracker.setEnabled(enabled);
+		}
+
+		@Override
+		public int getFrame() {
+			return GLResourceTracker.getFrame();
+		}
+
+		@Override
+		public int getTextureCount() {
+			return getCount(Type.TEXTURE);
+		}
+
+		@Override
+		public long getTextureBytes() {
+			return getByteSize(Type.TEXTURE);
+		}
+
+		@Override
+		public int getBufferCount() {
+			return getCount(Type.BUFFER);
+		}
+
+		@Override
+		public long getBufferBytes() {
+			return getByteSize(Type.BUFFER);
+		}
+
+		@Override
+		public int getVertexArrayCount() {
+			return getCount(Type.VERTEX_ARRAY);
+		}
+
+		@Override
+		public int getShaderCount() {
+			return getCount(Type.SHADER);
+		}
+
+		@Override
+		public int getProgramCount() {
+			return getCount(Type.PROGRAM);
+		}
+
+		@Override
+		public String[] findUnusedResources(int frames) {
+			List<Resource> unused = getUnusedResources(frames);
+			String[] result = new String[unused.size()];
+			for (int index = 0; index < result.length; index++) {
+				Resource resource = unused.get(index);
+				StackTraceElement[] creationSite = resource.getCreationSite();
+				result[index] = resource + (creationSite.length > 0 ? " created at " + creationSite[0] : "");
+			}
+			return result;
+		}
+	}
+}
@@ -0,0 +1,307 @@
+/*******************************************************************************
+ * The MIT License
+ *
+ * Copyright (c) 2018 knokko
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *  
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *******************************************************************************/
+package nl.knokko.gui.render;
+
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL13;
+import org.lwjgl.opengl.GL14;
+import org.lwjgl.opengl.GL15;
+import org.lwjgl.opengl.GL20;
+import org.lwjgl.opengl.GL30;
+
+import nl.knokko.gui.render.GLResourceTracker.Type;
+
+/**
+ * Remembers the OpenGL state that is changed by the GLGuiRenderer, the gui shaders and the GLGuiTextureLoader
+ * and skips calls that wouldn't change anything. All GL calls that change the state tracked by this class
+ * should go through this class, or invalidate() should be called afterwards.
+ * 
+ * The GLGuiRenderer invalidates the cache at the start of every frame, so other code that uses OpenGL
+ * between the frames doesn't need to be aware of this class. Textures can be created, uploaded and read
+ * between the frames as well, so those bind their texture with forceBindTexture, which is never skipped.
+ */
+public class GLStateCache {
+	
+	private static final int UNKNOWN = -1;
+	private static final int MAX_TEXTURE_UNITS = 32;
+	
+	private static int program;
+	private static int vertexArray;
+	private static int arrayBuffer;
+	
+	private static int activeTexture;
+	private static final int[] TEXTURES = new int[MAX_TEXTURE_UNITS];
+	
+	private static int blend;
+	private static int blendSource;
+	private static int blendDest;
+	private static int blendSourceAlpha;
+	private static int blendDestAlpha;
+	private static int depthTest;
+	private static int scissorTest;
+	
+	private static int viewportX;
+	private static int viewportY;
+	private static int viewportWidth;
+	private static int viewportHeight;
+	
+	private static int scissorX;
+	private static int scissorY;
+	private static int scissorWidth;
+	private static int scissorHeight;
+	
+	private static long skippedCalls;
+	
+	static {
+		invalidate();
+	}
+	
+	/**
+	 * Forgets all remembered state, so the next calls will be passed to OpenGL. This should be called
+	 * after OpenGL state has been changed without using this class.
+	 */
+	public static void invalidate(){
+		program = UNKNOWN;
+		vertexArray = UNKNOWN;
+		arrayBuffer = UNKNOWN;
+		activeTexture = UNKNOWN;
+		for (int index = 0; index < TEXTURES.length; index++)
+			TEXTURES[index] = UNKNOWN;
+		blend = UNKNOWN;
+		blendSource = UNKNOWN;
+		blendDest = UNKNOWN;
+		blendSourceAlpha = UNKNOWN;
+		blendDestAlpha = UNKNOWN;
+		depthTest = UNKNOWN;
+		scissorTest = UNKNOWN;
+		viewportX = UNKNOWN;
+		viewportY = UNKNOWN;
+		viewportWidth = UNKNOWN;
+		viewportHeight = UNKNOWN;
+		scissorX = UNKNOWN;
+		scissorY = UNKNOWN;
+		scissorWidth = UNKNOWN;
+		scissorHeight = UNKNOWN;
+	}
+	
+	/**
+	 * @return The number of GL calls that were skipped because they wouldn't change anything
+	 */
+	public static long getSkippedCalls(){
+		return skippedCalls;
+	}
+	
+	public static void resetSkippedCalls(){
+		skippedCalls = 0;
+	}
+	
+	/**
+	 * Should be called by classes that keep their own cache, like the uniform values of the shaders,
+	 * whenever they skip a call.
+	 */
+	public static void countSkippedCall(){
+		skippedCalls++;
+	}
+	
+	public static void useProgram(int programID){
+		GLResourceTracker.used(Type.PROGRAM, programID);
+		if (program != programID) {
+			GL20.glUseProgram(programID);
+			program = programID;
+		} else {
+			skippedCalls++;
+		}
+	}
+	
+	public static void bindVertexArray(int vertexArrayID){
+		GLResourceTracker.used(Type.VERTEX_ARRAY, vertexArrayID);
+		if (vertexArray != vertexArrayID) {
+			GL30.glBindVertexArray(vertexArrayID);
+			vertexArray = vertexArrayID;
+		} else {
+			skippedCalls++;
+		}
+	}
+	
+	public static void bindArrayBuffer(int bufferID){
+		GLResourceTracker.used(Type.BUFFER, bufferID);
+		if (arrayBuffer != bufferID) {
+			GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, bufferID);
+			arrayBuffer = bufferID;
+		} else {
+			skippedCalls++;
+		}
+	}
+	
+	public static void deleteArrayBuffer(int bufferID){
+		GL15.glDeleteBuffers(bufferID);
+		GLResourceTracker.deleted(Type.BUFFER, bufferID);
+		if (arrayBuffer == bufferID)
+			arrayBuffer = 0;
+	}
+	
+	/**
+	 * @param texture The texture unit, for instance GL13.GL_TEXTURE0
+	 */
+	public static void activeTexture(int texture){
+		if (activeTexture != texture) {
+			GL13.glActiveTexture(texture);
+			activeTexture = texture;
+		} else {
+			skippedCalls++;
+		}
+	}
+	
+	/**
+	 * Binds the given texture to GL_TEXTURE_2D of the active texture unit.
+	 */
+	public static void bindTexture(int textureID){
+		GLResourceTracker.used(Type.TEXTURE, textureID);
+		int unit = activeTexture - GL13.GL_TEXTURE0;
+		if (activeTexture == UNKNOWN || unit < 0 || unit >= MAX_TEXTURE_UNITS) {
+			GL11.glBindTexture(GL11.GL_TEXTURE_2D, textureID);
+			GLFrameProfiler.count(GLFrameProfiler.Counter.TEXTURE_BINDS);
+			return;
+		}
+		if (TEXTURES[unit] != textureID) {
+			GL11.glBindTexture(GL11.GL_TEXTURE_2D, textureID);
+			GLFrameProfiler.count(GLFrameProfiler.Counter.TEXTURE_BINDS);
+			TEXTURES[unit] = textureID;
+		} else {
+			skippedCalls++;
+		}
+	}
+	
+	/**
+	 * Binds the given texture to GL_TEXTURE_2D of the active texture unit, even if the cache thinks that it
+	 * is bound already. This must be used before changing or reading a texture: a skipped bind because of a
+	 * binding that changed without this class would change or read the wrong texture.
+	 */
+	public static void forceBindTexture(int textureID){
+		GLResourceTracker.used(Type.TEXTURE, textureID);
+		GL11.glBindTexture(GL11.GL_TEXTURE_2D, textureID);
+		GLFrameProfiler.count(GLFrameProfiler.Counter.TEXTURE_BINDS);
+		int unit = activeTexture - GL13.GL_TEXTURE0;
+		if (activeTexture != UNKNOWN && unit >= 0 && unit < MAX_TEXTURE_UNITS)
+			TEXTURES[unit] = textureID;
+	}
+	
+	public static void deleteTexture(int textureID){
+		GL11.glDeleteTextures(textureID);
+		GLResourceTracker.deleted(Type.TEXTURE, textureID);
+		GLCommandCapture.textureChanged(textureID);
+		
+		// Deleting a texture unbinds it from all texture units
+		for (int index = 0; index < TEXTURES.length; index++)
+			if (TEXTURES[index] == textureID)
+				TEXTURES[index] = 0;
+	}
+	
+	public static void setBlend(boolean enabled){
+		int value = enabled ? 1 : 0;
+		if (blend != value) {
+			if (enabled)
+				GL11.glEnable(GL11.GL_BLEND);
+			else
+				GL11.glDisable(GL11.GL_BLEND);
+			blend = value;
+		} else {
+			skippedCalls++;
+		}
+	}
+	
+	public static void blendFunc(int source, int dest){
+		if (blendSource != source || blendDest != dest || blendSourceAlpha != source || blendDestAlpha != dest) {
+			GL11.glBlendFunc(source, dest);
+			blendSource = source;
+			blendDest = dest;
+			blendSourceAlpha = source;
+			blendDestAlpha = dest;
+		} else {
+			skippedCalls++;
+		}
+	}
+	
+	public static void blendFuncSeparate(int source, int dest, int sourceAlpha, int destAlpha){
+		if (blendSource != source || blendDest != dest || blendSourceAlpha != sourceAlpha || blendDestAlpha != destAlpha) {
+			GL14.glBlendFuncSeparate(source, dest, sourceAlpha, destAlpha);
+			blendSource = source;
+			blendDest = dest;
+			blendSourceAlpha = sourceAlpha;
+			blendDestAlpha = destAlpha;
+		} else {
+			skippedCalls++;
+		}
+	}
+	
+	public static void setDepthTest(boolean enabled){
+		int value = enabled ? 1 : 0;
+		if (depthTest != value) {
+			if (enabled)
+				GL11.glEnable(GL11.GL_DEPTH_TEST);
+			else
+				GL11.glDisable(GL11.GL_DEPTH_TEST);
+			depthTest = value;
+		} else {
+			skippedCalls++;
+		}
+	}
+	
+	public static void viewport(int x, int y, int width, int height){
+		if (viewportX != x || viewportY != y || viewportWidth != width || viewportHeight != height) {
+			GL11.glViewport(x, y, width, height);
+			viewportX = x;
+			viewportY = y;
+			viewportWidth = width;
+			viewportHeight = height;
+		} else {
+			skippedCalls++;
+		}
+	}
+	
+	public static void setScissorTest(boolean enabled){
+		int value = enabled ? 1 : 0;
+		if (scissorTest != value) {
+			if (enabled)
+				GL11.glEnable(GL11.GL_SCISSOR_TEST);
+			else
+				GL11.glDisable(GL11.GL_SCISSOR_TEST);
+			scissorTest = value;
+		} else {
+			skippedCalls++;
+		}
+	}
+	
+	public static void scissor(int x, int y, int width, int height){
+		if (scissorX != x || scissorY != y || scissorWidth != width || scissorHeight != height) {
+			GL11.glScissor(x, y, width, height);
+			scissorX = x;
+			scissorY = y;
+			scissorWidth = width;
+			scissorHeight = height;
+		} else {
+			skippedCalls++;
+		}
+	}
+}
@@ -0,0 +1,398 @@
+/*******************************************************************************
+ * The MIT License
+ *
+ * Copyright (c) 2018 knokko
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *  
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *******************************************************************************/
+package nl.knokko.gui.render;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import nl.knokko.gui.color.GuiColor;
+import nl.knokko.gui.texture.GuiTexture;
+import nl.knokko.gui.texture.loader.SoftwareGuiTextureLoader;
+
+/**
+ * A GuiRenderer that rasterizes into an int array instead of using OpenGL, so it can be used without display,
+ * for instance for tests and screenshots. It gives the same results as the GLGuiRenderer: quads cover the
+ * pixels whose centers are inside them, textures are sampled with linear filtering and clamped to their edges,
+ * and colors are blended with the source alpha like GL_SRC_ALPHA, GL_ONE_MINUS_SRC_ALPHA.
+ * 
+ * The textures must have been loaded by the SoftwareGuiTextureLoader of this renderer. The pixels are stored
+ * as ARGB integers, row by row starting at the top, just like the pixels of a BufferedImage. The areas of
+ * getArea are GLClipRenderers, so they are clipped the same way as the areas of the GLGuiRenderer.
+ */
+public class SoftwareGuiRenderer extends GuiRenderer {
+	
+	/**
+	 * In parallel mode, every thread rasterizes a band of at least this many rows
+	 */
+	private static final int MIN_BAND_HEIGHT = 32;
+	
+	private final SoftwareGuiTextureLoader textureLoader;
+	
+	private int width;
+	private int height;
+	private int[] pixels;
+	
+	private boolean parallel;
+	
+	private final Clip clip;
+	
+	public SoftwareGuiRenderer(SoftwareGuiTextureLoader loader, int width, int height) {
+		textureLoader = loader;
+		clip = new Clip();
+		setSize(width, height);
+	}
+	
+	/**
+	 * Resizes the framebuffer. All its pixels will be transparent black after this call.
+	 */
+	public void setSize(int width, int height) {
+		if (width <= 0 || height <= 0)
+			throw new IllegalArgumentException("The size must be positive, but is " + width + "x" + height);
+		this.width = width;
+		this.height = height;
+		pixels = new int[width * height];
+		clip.reset(0, height);
+	}
+	
+	/**
+	 * Enables or disables parallel mode. In parallel mode, the framebuffer is split into horizontal bands and
+	 * every band executes all render commands on its own thread, clipped to its rows. The result is the same
+	 * as without parallel mode.
+	 */
+	public void setParallel(boolean parallel) {
+		this.parallel = parallel;
+	}
+	
+	public boolean isParallel() {
+		return parallel;
+	}
+	
+	public int getWidth() {
+		return width;
+	}
+	
+	public int getHeight() {
+		return height;
+	}
+	
+	/**
+	 * @return The framebuffer itself, not a copy
+	 */
+	public int[] getPixels() {
+		return pixels;
+	}
+	
+	/**
+	 * @return A new image containing a copy of the framebuffer
+	 */
+	public BufferedImage createImage() {
+		BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+		image.setRGB(0, 0, width, height, pixels, 0, width);
+		return image;
+	}
+
+	@Override
+	public GuiRenderer getArea(float minX, float minY, float maxX, float maxY) {
+		return new GLClipRenderer(this, minX, minY, maxX, maxY);
+	}
+
+	@Override
+	void renderTextureNow(GuiTexture texture, float minX, float minY, float maxX, float maxY) {
+		if (!clip.apply(texture, minX, minY, maxX, maxY))
+			drawTextureRows(texture, minX, minY, maxX, maxY, clip);
+	}
+
+	@Override
+	void fillNow(GuiColor color, float minX, float minY, float maxX, float maxY) {
+		fillRows(color, minX, minY, maxX, maxY, clip);
+	}
+
+	@Override
+	void clearNow(GuiColor color) {
+		clearRows(color, clip);
+	}
+	
+	@Override
+	void renderNow(final List<RenderCommand> renderCommands) {
+		int bands = Math.min(Runtime.getRuntime().availableProcessors(), height / MIN_BAND_HEIGHT);
+		if (!parallel || bands < 2) {
+			clip.reset(0, height);
+			super.renderNow(renderCommands);
+			return;
+		}
+		int rowsPerBand = (height + bands - 1) / bands;
+		List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(bands);
+		for (int row = 0; row < height; row += rowsPerBand) {
+			final Band band = new Band(row, Math.min(height, row + rowsPerBand));
+			tasks.add(new Callable<Void>() {
+
+				@Override
+				public Void call() {
+					band.renderNow(renderCommands);
+					return null;
+				}
+			});
+		}
+		try {
+			for (Future<Void> future : ForkJoinPool.commonPool().invokeAll(tasks))
+				future.get();
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted while rendering", ex);
+		} catch (ExecutionException ex) {
+			throw new RuntimeException("Failed to render", ex.getCause());
+		}
+	}
+	
+	private static int toByte(float value) {
+		return Math.max(0, Math.min(255, Math.round(value * 255)));
+	}
+	
+	/**
+	 * Blends the given color over the given pixel with the source alpha, for all 4 components.
+	 */
+	private static int blend(int dest, int red, int green, int blue, int alpha) {
+		if (alpha == 255)
+			return 0xFF000000 | red << 16 | green << 8 | blue;
+		int inverse = 255 - alpha;
+		int destAlpha = dest >>> 24;
+		int destRed = (dest >> 16) & 0xFF;
+		int destGreen = (dest >> 8) & 0xFF;
+		int destBlue = dest & 0xFF;
+		int resultAlpha = (alpha * alpha + destAlpha * inverse + 127) / 255;
+		int resultRed = (red * alpha + destRed * inverse + 127) / 255;
+		int resultGreen = (green * alpha + destGreen * inverse + 127) / 255;
+		int resultBlue = (blue * alpha + destBlue * inverse + 127) / 255;
+		return resultAlpha << 24 | resultRed << 16 | resultGreen << 8 | resultBlue;
+	}
+	
+	/**
+	 * @return The first pixel column whose center is at or after the given x coordinate in pixels
+	 */
+	private static int firstPixel(float position) {
+		return (int) Math.ceil(position - 0.5f);
+	}
+	
+	private void clearRows(GuiColor color, Clip clip) {
+		int argb = toByte(color.getAlphaF()) << 24 | toByte(color.getRedF()) << 16 | toByte(color.getGreenF()) << 8 | toByte(color.getBlueF());
+		if (clip.left == 0 && clip.right == width) {
+			Arrays.fill(pixels, clip.top * width, Math.max(clip.top, clip.bottom) * width, argb);
+		} else if (clip.left < clip.right) {
+			for (int row = clip.top; row < clip.bottom; row++)
+				Arrays.fill(pixels, row * width + clip.left, row * width + clip.right, argb);
+		}
+	}
+	
+	private void fillRows(GuiColor color, float minX, float minY, float maxX, float maxY, Clip clip) {
+		int alpha = toByte(color.getAlphaF());
+		if (alpha == 0)
+			return;
+		int red = toByte(color.getRedF());
+		int green = toByte(color.getGreenF());
+		int blue = toByte(color.getBlueF());
+		int left = Math.max(clip.left, firstPixel(minX * width));
+		int right = Math.min(clip.right, firstPixel(maxX * width));
+		
+		// Rows are stored from top to bottom, but the y coordinates of the renderer go up
+		int top = Math.max(clip.top, height - firstPixel(maxY * height));
+		int bottom = Math.min(clip.bottom, height - firstPixel(minY * height));
+		if (left >= right)
+			return;
+		if (alpha == 255) {
+			int argb = 0xFF000000 | red << 16 | green << 8 | blue;
+			for (int row = top; row < bottom; row++)
+				Arrays.fill(pixels, row * width + left, row * width + right, argb);
+		} else {
+			for (int row = top; row < bottom; row++) {
+				int end = row * width + right;
+				for (int index = row * width + left; index < end; index++)
+					pixels[index] = blend(pixels[index], red, green, blue, alpha);
+			}
+		}
+	}
+	
+	private void drawTextureRows(GuiTexture texture, float minX, float minY, float maxX, float maxY, Clip clip) {
+		int textureID = texture.getTextureID();
+		int[] texels = textureLoader.getPixels(textureID);
+		if (texels == null) {
+			// The GLGuiRenderer doesn't render textures without texture id either
+			return;
+		}
+		int textureWidth = textureLoader.getWidth(textureID);
+		int textureHeight = textureLoader.getHeight(textureID);
+		
+		float pixelMinX = minX * width;
+		float pixelMaxX = maxX * width;
+		float pixelMinY = minY * height;
+		float pixelMaxY = maxY * height;
+		int left = Math.max(clip.left, firstPixel(pixelMinX));
+		int right = Math.min(clip.right, firstPixel(pixelMaxX));
+		int top = Math.max(clip.top, height - firstPixel(pixelMaxY));
+		int bottom = Math.min(clip.bottom, height - firstPixel(pixelMinY));
+		if (left >= right || top >= bottom)
+			return;
+		
+		// The texel coordinates change linearly with the pixel coordinates, the top of the quad has minV
+		float minU = texture.getMinU();
+		float minV = texture.getMinV();
+		float texelsPerPixelX = (texture.getMaxU() - minU) * textureWidth / (pixelMaxX - pixelMinX);
+		float texelsPerPixelY = (texture.getMaxV() - minV) * textureHeight / (pixelMaxY - pixelMinY);
+		
+		// Texel centers are at half integer coordinates, so subtract 0.5 to get the texel to the left
+		float startS = minU * textureWidth + (left + 0.5f - pixelMinX) * texelsPerPixelX - 0.5f;
+		long startFixedS = (long) Math.floor(startS * 65536);
+		long fixedStepS = (long) Math.floor(texelsPerPixelX * 65536);
+		
+		for (int row = top; row < bottom; row++) {
+			float centerY = height - row - 0.5f;
+			float t = minV * textureHeight + (pixelMaxY - centerY) * texelsPerPixelY - 0.5f;
+			int texelRow = (int) Math.floor(t);
+			int weightT = (int) ((t - texelRow) * 256);
+			int rowOffset0 = clamp(texelRow, textureHeight) * textureWidth;
+			int rowOffset1 = clamp(texelRow + 1, textureHeight) * textureWidth;
+			
+			long fixedS = startFixedS;
+			int index = row * width + left;
+			int end = row * width + right;
+			for (; index < end; index++, fixedS += fixedStepS) {
+				int texelColumn = (int) (fixedS >> 16);
+				int weightS = (int) (fixedS >> 8) & 0xFF;
+				int column0 = clamp(texelColumn, textureWidth);
+				int sample;
+				if (weightS == 0 && weightT == 0) {
+					sample = texels[rowOffset0 + column0];
+				} else {
+					int column1 = clamp(texelColumn + 1, textureWidth);
+					sample = bilinear(texels[rowOffset0 + column0], texels[rowOffset0 + column1], 
+							texels[rowOffset1 + column0], texels[rowOffset1 + column1], weightS, weightT);
+				}
+				int alpha = sample >>> 24;
+				if (alpha != 0)
+					pixels[index] = blend(pixels[index], (sample >> 16) & 0xFF, (sample >> 8) & 0xFF, sample & 0xFF, alpha);
+			}
+		}
+	}
+	
+	private static int clamp(int texel, int size) {
+		return texel < 0 ? 0 : texel >= size ? size - 1 : texel;
+	}
+	
+	/**
+	 * Interpolates the 4 given ARGB texels, the weights are between 0 and 255.
+	 */
+	private static int bilinear(int topLeft, int topRight, int bottomLeft, int bottomRight, int weightS, int weightT) {
+		int result = 0;
+		for (int shift = 0; shift < 32; shift += 8) {
+			int top = ((topLeft >>> shift) & 0xFF) * (256 - weightS) + ((topRight >>> shift) & 0xFF) * weightS;
+			int bottom = ((bottomLeft >>> shift) & 0xFF) * (256 - weightS) + ((bottomRight >>> shift) & 0xFF) * weightS;
+			int value = (top * (256 - weightT) + bottom * weightT + 32768) >> 16;
+			result |= value << shift;
+		}
+		return result;
+	}
+	
+	/**
+	 * Executes render commands for only a part of the rows of the framebuffer, used in parallel mode.
+	 */
+	private class Band extends GuiRenderer {
+		
+		private final Clip clip;
+		
+		private Band(int minRow, int boundRow) {
+			clip = new Clip();
+			clip.reset(minRow, boundRow);
+		}
+
+		@Override
+		public GuiRenderer getArea(float minX, float minY, float maxX, float maxY) {
+			return new GLClipRenderer(this, minX, minY, maxX, maxY);
+		}
+
+		@Override
+		void renderTextureNow(GuiTexture texture, float minX, float minY, float maxX, float maxY) {
+			if (!clip.apply(texture, minX, minY, maxX, maxY))
+				drawTextureRows(texture, minX, minY, maxX, maxY, clip);
+		}
+
+		@Override
+		void fillNow(GuiColor color, float minX, float minY, float maxX, float maxY) {
+			fillRows(color, minX, minY, maxX, maxY, clip);
+		}
+
+		@Override
+		void clearNow(GuiColor color) {
+			clearRows(color, clip);
+		}
+	}
+	
+	/**
+	 * The pixels that the render commands can change: the rows of a band, intersected with the clip rectangle
+	 * of the GLClipRenderer whose quad is being drawn. The clip rectangle is rounded outwards to whole pixels,
+	 * just like the scissor box of the GLGuiRenderer.
+	 */
+	private class Clip {
+		
+		private int minRow;
+		private int boundRow;
+		
+		private int left;
+		private int right;
+		private int top;
+		private int bottom;
+		
+		private void reset(int minRow, int boundRow) {
+			this.minRow = minRow;
+			this.boundRow = boundRow;
+			left = 0;
+			right = width;
+			top = minRow;
+			bottom = boundRow;
+		}
+		
+		/**
+		 * Starts or ends clipping if the given texture is one of the clip markers of GLClipRenderer.
+		 * @return true if the texture was a clip marker, so it must not be drawn
+		 */
+		private boolean apply(GuiTexture texture, float minX, float minY, float maxX, float maxY) {
+			if (texture == GLClipRenderer.CLIP_START) {
+				left = Math.max(0, (int) Math.floor(minX * width));
+				right = Math.min(width, (int) Math.ceil(maxX * width));
+				top = Math.max(minRow, height - (int) Math.ceil(maxY * height));
+				bottom = Math.min(boundRow, height - (int) Math.floor(minY * height));
+				return true;
+			}
+			if (texture == GLClipRenderer.CLIP_END) {
+				reset(minRow, boundRow);
+				return true;
+			}
+			return false;
+		}
+	}
+}
@@ -0,0 +1,313 @@
+/*******************************************************************************
+ * The MIT License
+ *
+ * Copyright (c) 2018 knokko
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *  
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *******************************************************************************/
+package nl.knokko.gui.shader;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import org.lwjgl.BufferUtils;
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL20;
+import org.lwjgl.opengl.GL41;
+import org.lwjgl.opengl.GLContext;
+
+import nl.knokko.gui.render.GLResourceTracker;
+import nl.knokko.gui.render.GLResourceTracker.Type;
+
+/**
+ * Compiles and links the shader programs of GLGui and caches the linked programs on disk with
+ * glGetProgramBinary, so the next start can load them with glProgramBinary instead of compiling the
+ * shaders again. The cached programs are keyed by the vendor, renderer and version of the OpenGL driver and
+ * a hash of the shader sources, so a driver update or a changed shader simply causes a recompilation.
+ * Programs that are rejected by the driver are compiled again as well and their cache file is replaced.
+ * The cache is only used when the context supports OpenGL 4.1 and at least one binary format.
+ */
+public class GLProgramCache {
+	
+	private static final int MAGIC = 0x474C5042;
+	// The magic number, the binary format and the length of the binary
+	private static final int HEADER_SIZE = 12;
+	
+	private static File folder = new File(System.getProperty("user.home") + File.separator + ".LWJGL" 
+			+ File.separator + "shaders");
+	
+	private static int cacheHits;
+	private static int compilations;
+	
+	/**
+	 * Sets the folder where the linked programs are cached. Use null to disable the cache. The default folder
+	 * is the shaders folder in the .LWJGL folder of the user home. This should be called before the renderer
+	 * is initialized.
+	 */
+	public static synchronized void setFolder(File cacheFolder){
+		folder = cacheFolder;
+	}
+	
+	public static synchronized File getFolder(){
+		return folder;
+	}
+	
+	/**
+	 * @return The number of programs that were loaded from the cache
+	 */
+	public static synchronized int getCacheHits(){
+		return cacheHits;
+	}
+	
+	/**
+	 * @return The number of programs that had to be compiled and linked
+	 */
+	public static synchronized int getCompilations(){
+		return compilations;
+	}
+	
+	/**
+	 * Creates a program from the given vertex and fragment shader resources. Attribute i will be bound to
+	 * the i-th name in attributes.
+	 * @return The id of the linked program
+	 * @throws RuntimeException If a shader can't be read or the program can't be compiled or linked
+	 */
+	static int createProgram(String vertexPath, String fragmentPath, String... attributes){
+		String vertexSource = readSource(vertexPath);
+		String fragmentSource = readSource(fragmentPath);
+		File cacheFile = getCacheFile(vertexSource, fragmentSource, attributes);
+		if (cacheFile != null) {
+			int programID = loadBinary(cacheFile);
+			if (programID != 0) {
+				synchronized (GLProgramCache.class) {
+					cacheHits++;
+				}
+				return programID;
+			}
+		}
+		
+		int programID = GL20.glCreateProgram();
+		GLResourceTracker.created(Type.PROGRAM, programID, 0);
+		int vertexShaderID = compileShader(vertexPath, vertexSource, GL20.GL_VERTEX_SHADER, programID);
+		int fragmentShaderID;
+		try {
+			fragmentShaderID = compileShader(fragmentPath, fragmentSource, GL20.GL_FRAGMENT_SHADER, programID);
+		} catch (RuntimeException ex) {
+			
+			// compileShader only cleans up the shader it was compiling
+			deleteShader(vertexShaderID);
+			throw ex;
+		}
+		GL20.glAttachShader(programID, vertexShaderID);
+		GL20.glAttachShader(programID, fragmentShaderID);
+		for (int index = 0; index < attributes.length; index++)
+			GL20.glBindAttribLocation(programID, index, attributes[index]);
+		if (cacheFile != null)
+			GL41.glProgramParameteri(programID, GL41.GL_PROGRAM_BINARY_RETRIEVABLE_HINT, GL11.GL_TRUE);
+		GL20.glLinkProgram(programID);
+		
+		// The linked program doesn't need the shaders anymore
+		GL20.glDetachShader(programID, vertexShaderID);
+		GL20.glDetachShader(programID, fragmentShaderID);
+		deleteShader(vertexShaderID);
+		deleteShader(fragmentShaderID);
+		if (GL20.glGetProgrami(programID, GL20.GL_LINK_STATUS) == GL11.GL_FALSE) {
+			String log = GL20.glGetProgramInfoLog(programID, GL20.glGetProgrami(programID, GL20.GL_INFO_LOG_LENGTH));
+			deleteProgram(programID);
+			throw new RuntimeException("Failed to link " + vertexPath + " and " + fragmentPath + ": " + log);
+		}
+		synchronized (GLProgramCache.class) {
+			compilations++;
+		}
+		if (cacheFile != null)
+			saveBinary(programID, cacheFile);
+		return programID;
+	}
+	
+	static void deleteProgram(int programID){
+		GL20.glDeleteProgram(programID);
+		GLResourceTracker.deleted(Type.PROGRAM, programID);
+	}
+	
+	private static void deleteShader(int shaderID){
+		GL20.glDeleteShader(shaderID);
+		GLResourceTracker.deleted(Type.SHADER, shaderID);
+	}
+	
+	private static String readSource(String path){
+		InputStream input = GLProgramCache.class.getClassLoader().getResourceAsStream(path);
+		if (input == null)
+			throw new RuntimeException("Can't find the shader " + path);
+		try {
+			try {
+				ByteArrayOutputStream source = new ByteArrayOutputStream(input.available() + 1);
+				byte[] buffer = new byte[4096];
+				int readBytes;
+				while ((readBytes = input.read(buffer)) != -1)
+					source.write(buffer, 0, readBytes);
+				return new String(source.toByteArray(), StandardCharsets.UTF_8);
+			} finally {
+				input.close();
+			}
+		} catch (IOException ex) {
+			throw new RuntimeException("Failed to read the shader " + path, ex);
+		}
+	}
+	
+	private static int compileShader(String path, String source, int type, int programID){
+		int shaderID = GL20.glCreateShader(type);
+		GLResourceTracker.created(Type.SHADER, shaderID, 0);
+		GL20.glShaderSource(shaderID, source);
+		GL20.glCompileShader(shaderID);
+		if (GL20.glGetShaderi(shaderID, GL20.GL_COMPILE_STATUS) == GL11.GL_FALSE) {
+			String log = GL20.glGetShaderInfoLog(shaderID, GL20.glGetShaderi(shaderID, GL20.GL_INFO_LOG_LENGTH));
+			deleteShader(shaderID);
+			deleteProgram(programID);
+			throw new RuntimeException("Failed to compile the shader " + path + ": " + log);
+		}
+		return shaderID;
+	}
+	
+	/**
+	 * @return The file where the program with the given sources should be cached, or null if the cache is
+	 * disabled or not supported by the current context
+	 */
+	private static File getCacheFile(String vertexSource, String fragmentSource, String[] attributes){
+		File cacheFolder = getFolder();
+		if (cacheFolder == null || !GLContext.getCapabilities().OpenGL41 
+				|| GL11.glGetInteger(GL41.GL_NUM_PROGRAM_BINARY_FORMATS) <= 0)
+			return null;
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException ex) {
+			
+			// Every Java platform is required to support SHA-256
+			throw new Error(ex);
+		}
+		
+		// The 0 bytes make sure that different combinations of the parts can't give the same key
+		String[] driver = {GL11.glGetString(GL11.GL_VENDOR), GL11.glGetString(GL11.GL_RENDERER), GL11.glGetString(GL11.GL_VERSION)};
+		for (String part : driver)
+			digest.update((part + '\0').getBytes(StandardCharsets.UTF_8));
+		digest.update((vertexSource + '\0' + fragmentSource + '\0').getBytes(StandardCharsets.UTF_8));
+		for (String attribute : attributes)
+			digest.update((attribute + '\0').getBytes(StandardCharsets.UTF_8));
+		StringBuilder name = new StringBuilder(70);
+		for (byte value : digest.digest())
+			name.append(Character.forDigit((value >> 4) & 0xF, 16)).append(Character.forDigit(value & 0xF, 16));
+		return new File(cacheFolder, name.append(".bin").toString());
+	}
+	
+	/**
+	 * @return The id of the program that was loaded from the cache file, or 0 if there was no valid binary
+	 */
+	private static int loadBinary(File cacheFile){
+		if (!cacheFile.isFile())
+			return 0;
+		int format;
+		ByteBuffer binary;
+		try {
+			DataInputStream input = new DataInputStream(new FileInputStream(cacheFile));
+			try {
+				if (input.readInt() != MAGIC)
+					throw new IOException("Not a program binary");
+				format = input.readInt();
+				
+				// Don't trust the length of a file that may be truncated or corrupt
+				int length = input.readInt();
+				if (length <= 0 || length > cacheFile.length() - HEADER_SIZE)
+					throw new IOException("Invalid binary length " + length);
+				byte[] data = new byte[length];
+				input.readFully(data);
+				binary = BufferUtils.createByteBuffer(data.length);
+				binary.put(data);
+				binary.flip();
+			} finally {
+				input.close();
+			}
+		} catch (IOException | RuntimeException ex) {
+			
+			// A missing or broken cache file just means that the program needs to be compiled
+			cacheFile.delete();
+			return 0;
+		}
+		int programID = GL20.glCreateProgram();
+		GLResourceTracker.created(Type.PROGRAM, programID, 0);
+		GL41.glProgramBinary(programID, format, binary);
+		if (GL20.glGetProgrami(programID, GL20.GL_LINK_STATUS) == GL11.GL_FALSE) {
+			
+			// The driver can reject binaries at any moment, for instance after an update that kept its version
+			deleteProgram(programID);
+			cacheFile.delete();
+			return 0;
+		}
+		return programID;
+	}
+	
+	private static void saveBinary(int programID, File cacheFile){
+		int length = GL20.glGetProgrami(programID, GL41.GL_PROGRAM_BINARY_LENGTH);
+		if (length <= 0)
+			return;
+		IntBuffer lengthBuffer = BufferUtils.createIntBuffer(1);
+		IntBuffer formatBuffer = BufferUtils.createIntBuffer(1);
+		ByteBuffer binary = BufferUtils.createByteBuffer(length);
+		GL41.glGetProgramBinary(programID, lengthBuffer, formatBuffer, binary);
+		byte[] data = new byte[lengthBuffer.get(0)];
+		binary.get(data);
+		File folder = cacheFile.getParentFile();
+		File temp = null;
+		try {
+			if (!folder.isDirectory() && !folder.mkdirs())
+				return;
+			
+			// Write to a temporary file first, so other processes never see a partial binary
+			temp = File.createTempFile(cacheFile.getName(), ".tmp", folder);
+			DataOutputStream output = new DataOutputStream(new FileOutputStream(temp));
+			try {
+				output.writeInt(MAGIC);
+				output.writeInt(formatBuffer.get(0));
+				output.writeInt(data.length);
+				output.write(data);
+			} finally {
+				output.close();
+			}
+			Files.move(temp.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		} catch (IOException ex) {
+			
+			// The cache is only an optimization, so the program can still be used
+		} finally {
+			if (temp != null && temp.exists())
+				temp.delete();
+		}
+	}
+}
@@ -0,0 +1,60 @@
+/*******************************************************************************
+ * The MIT License
+ *
+ * Copyright (c) 2018 knokko
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *  
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *******************************************************************************/
+package nl.knokko.gui.shader;
+
+import nl.knokko.gui.render.GLStateCache;
+
+/**
+ * The shader used by the batched render path. Unlike the GuiShader, it doesn't have any position or
+ * uv uniforms because every vertex already contains its final screen position and texture coordinates.
+ * Solid color fills have their color and a color mode of 1 in every vertex, so they can be drawn in the
+ * same batch as textured quads.
+ */
+public class GuiBatchShader {
+	
+	public static final int ATTRIBUTE_POSITION = 0;
+	public static final int ATTRIBUTE_TEXTURE_COORDS = 1;
+	public static final int ATTRIBUTE_COLOR = 2;
+	public static final int ATTRIBUTE_COLOR_MODE = 3;
+	
+	private int programID;
+	
+	public GuiBatchShader() {
+		programID = GLProgramCache.createProgram("nl/knokko/gui/shader/batch_vertex.shader", "nl/knokko/gui/shader/fragment.shader", 
+				"position", "vertexTextureCoords", "vertexColor", "vertexColorMode");
+	}
+	
+	public void start(){
+		GLStateCache.useProgram(programID);
+	}
+	
+	public void stop(){
+		GLStateCache.useProgram(0);
+	}
+	
+	public void clean(){
+		stop();
+		GLProgramCache.deleteProgram(programID);
+	}
+}
\ No newline at end of file
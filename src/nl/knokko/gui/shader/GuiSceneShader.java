@@ -0,0 +1,83 @@
+/*******************************************************************************
+ * The MIT License
+ *
+ * Copyright (c) 2018 knokko
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *  
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *******************************************************************************/
+package nl.knokko.gui.shader;
+
+import org.lwjgl.opengl.GL20;
+
+import nl.knokko.gui.render.GLFrameProfiler;
+import nl.knokko.gui.render.GLStateCache;
+
+/**
+ * The shader used to draw retained quad scenes. It has the same vertex attributes as the GuiBatchShader,
+ * but the vertex positions are relative to the area of the window the scene is drawn in, so a scene can be
+ * moved without changing its vertices.
+ */
+public class GuiSceneShader {
+	
+	private int programID;
+	
+	private int locationScreenPosition;
+	private int locationSize;
+	
+	// The last values that were loaded into the uniforms, NaN means unknown
+	private float positionX = Float.NaN, positionY = Float.NaN;
+	private float width = Float.NaN, height = Float.NaN;
+	
+	public GuiSceneShader() {
+		programID = GLProgramCache.createProgram("nl/knokko/gui/shader/scene_vertex.shader", "nl/knokko/gui/shader/fragment.shader", 
+				"position", "vertexTextureCoords", "vertexColor", "vertexColorMode");
+		locationScreenPosition = GL20.glGetUniformLocation(programID, "screenPosition");
+		locationSize = GL20.glGetUniformLocation(programID, "size");
+	}
+	
+	/**
+	 * Loads the area of the window the scene will be drawn in, in the same coordinates as the GuiShader.
+	 */
+	public void loadArea(float x, float y, float width, float height){
+		if (x != positionX || y != positionY || width != this.width || height != this.height) {
+			GL20.glUniform2f(locationScreenPosition, x, y);
+			GL20.glUniform2f(locationSize, width, height);
+			GLFrameProfiler.count(GLFrameProfiler.Counter.UNIFORM_UPLOADS);
+			positionX = x;
+			positionY = y;
+			this.width = width;
+			this.height = height;
+		} else {
+			GLStateCache.countSkippedCall();
+		}
+	}
+	
+	public void start(){
+		GLStateCache.useProgram(programID);
+	}
+	
+	public void stop(){
+		GLStateCache.useProgram(0);
+	}
+	
+	public void clean(){
+		stop();
+		GLProgramCache.deleteProgram(programID);
+	}
+}
@@ -23,92 +23,133 @@
  *******************************************************************************/
 package nl.knokko.gui.shader;
 
-import java.io.BufferedReader;
-import java.io.IOException;
-import java.io.InputStreamReader;
-import java.net.URL;
-
-import org.lwjgl.opengl.GL11;
 import org.lwjgl.opengl.GL20;
 
+import nl.knokko.gui.render.GLFrameProfiler;
+import nl.knokko.gui.render.GLStateCache;
+
 public class GuiShader {
 	
-	public static final GuiShader GUI_SHADER = new GuiShader();
-	
-	private static int loadShader(URL url, int type){
-        StringBuilder shaderSource = new StringBuilder();
-        try {
-            BufferedReader reader = new BufferedReader(new InputStreamReader(url.openStream(), "UTF-8"));
-            String line;
-            while((line = reader.readLine())!=null){
-                shaderSource.append(line).append("//\n");
-            }
-            reader.close();
-        }catch(IOException e){
-            e.printStackTrace();
-            System.exit(-1);
-        }
-        int shaderID = GL20.glCreateShader(type);
-        GL20.glShaderSource(shaderID, shaderSource);
-        GL20.glCompileShader(shaderID);
-        if(GL20.glGetShaderi(shaderID, GL20.GL_COMPILE_STATUS ) == GL11.GL_FALSE){
-        	System.out.println("Failed to load shader " + url + " (" + type + ")");
-            System.out.println(GL20.glGetShaderInfoLog(shaderID, 500));
-            System.err.println("Could not compile shader!");
-            System.exit(-1);
-        }
-        return shaderID;
-    }
+	private static GuiShader shared;
+	
+	/**
+	 * Replacement for the old GUI_SHADER constant. Every GLGuiRenderer now creates its own GuiShader,
+	 * so this creates a separate shader the first time it is called. This requires a current OpenGL context.
+	 * @return The shared GuiShader
+	 * @deprecated Create a GuiShader instance instead
+	 */
+	@Deprecated
+	public static synchronized GuiShader getGuiShader() {
+		if (shared == null)
+			shared = new GuiShader();
+		return shared;
+	}
 	
 	private int programID;
-	private int vertexShaderID;
-	private int fragmentShaderID;
 	
 	private int locationScreenPosition;
 	private int locationSize;
 	
 	private int locationUV;
+	
+	private int locationColor;
+	private int locationUseColor;
+	
+	// The last values that were loaded into the uniforms, NaN means unknown
+	private float positionX = Float.NaN, positionY = Float.NaN;
+	private float width = Float.NaN, height = Float.NaN;
+	private float minU = Float.NaN, minV = Float.NaN, maxU = Float.NaN, maxV = Float.NaN;
+	private float red = Float.NaN, green = Float.NaN, blue = Float.NaN, alpha = Float.NaN;
+	private float colorMode = Float.NaN;
 
-	private GuiShader() {
-		vertexShaderID = loadShader(GuiShader.class.getClassLoader().getResource("nl/knokko/gui/shader/vertex.shader"), GL20.GL_VERTEX_SHADER);
-		fragmentShaderID = loadShader(GuiShader.class.getClassLoader().getResource("nl/knokko/gui/shader/fragment.shader"), GL20.GL_FRAGMENT_SHADER);
-		programID = GL20.glCreateProgram();
-		GL20.glAttachShader(programID, vertexShaderID);
-		GL20.glAttachShader(programID, fragmentShaderID);
-		GL20.glBindAttribLocation(programID, 0, "modelPosition");
-		GL20.glLinkProgram(programID);
-		GL20.glValidateProgram(programID);
+	/**
+	 * Creates the shader program. This requires a current OpenGL context, so the GLGuiRenderer does this
+	 * in its init method.
+	 * @throws RuntimeException If the shaders can't be compiled or linked
+	 */
+	public GuiShader() {
+		programID = GLProgramCache.createProgram("nl/knokko/gui/shader/vertex.shader", "nl/knokko/gui/shader/fragment.shader", "modelPosition");
 		locationScreenPosition = GL20.glGetUniformLocation(programID, "screenPosition");
 		locationSize = GL20.glGetUniformLocation(programID, "size");
 		locationUV = GL20.glGetUniformLocation(programID, "uv");
+		locationColor = GL20.glGetUniformLocation(programID, "color");
+		locationUseColor = GL20.glGetUniformLocation(programID, "useColor");
 	}
 	
+	// The uniform setters skip the GL call when the uniform already has the given value
+	
 	public void loadPosition(float x, float y){
-		GL20.glUniform2f(locationScreenPosition, x, y);
+		if (x != positionX || y != positionY) {
+			GL20.glUniform2f(locationScreenPosition, x, y);
+			GLFrameProfiler.count(GLFrameProfiler.Counter.UNIFORM_UPLOADS);
+			positionX = x;
+			positionY = y;
+		} else {
+			GLStateCache.countSkippedCall();
+		}
 	}
 	
 	public void loadSize(float width, float height){
-		GL20.glUniform2f(locationSize, width, height);
+		if (width != this.width || height != this.height) {
+			GL20.glUniform2f(locationSize, width, height);
+			GLFrameProfiler.count(GLFrameProfiler.Counter.UNIFORM_UPLOADS);
+			this.width = width;
+			this.height = height;
+		} else {
+			GLStateCache.countSkippedCall();
+		}
 	}
 	
 	public void loadBounds(float minU, float minV, float maxU, float maxV) {
-		GL20.glUniform4f(locationUV, minU, minV, maxU, maxV);
+		if (minU != this.minU || minV != this.minV || maxU != this.maxU || maxV != this.maxV) {
+			GL20.glUniform4f(locationUV, minU, minV, maxU, maxV);
+			GLFrameProfiler.count(GLFrameProfiler.Counter.UNIFORM_UPLOADS);
+			this.minU = minU;
+			this.minV = minV;
+			this.maxU = maxU;
+			this.maxV = maxV;
+		} else {
+			GLStateCache.countSkippedCall();
+		}
+	}
+	
+	public void loadColor(float red, float green, float blue, float alpha) {
+		if (red != this.red || green != this.green || blue != this.blue || alpha != this.alpha) {
+			GL20.glUniform4f(locationColor, red, green, blue, alpha);
+			GLFrameProfiler.count(GLFrameProfiler.Counter.UNIFORM_UPLOADS);
+			this.red = red;
+			this.green = green;
+			this.blue = blue;
+			this.alpha = alpha;
+		} else {
+			GLStateCache.countSkippedCall();
+		}
+	}
+	
+	/**
+	 * If useColor is true, the quads will be filled with the color of loadColor instead of the bound texture.
+	 */
+	public void loadColorMode(boolean useColor) {
+		float mode = useColor ? 1 : 0;
+		if (mode != colorMode) {
+			GL20.glUniform1f(locationUseColor, mode);
+			GLFrameProfiler.count(GLFrameProfiler.Counter.UNIFORM_UPLOADS);
+			colorMode = mode;
+		} else {
+			GLStateCache.countSkippedCall();
+		}
 	}
 	
 	public void start(){
-		GL20.glUseProgram(programID);
+		GLStateCache.useProgram(programID);
 	}
 	
 	public void stop(){
-		GL20.glUseProgram(0);
+		GLStateCache.useProgram(0);
 	}
 	
 	public void clean(){
 		stop();
-		GL20.glDetachShader(programID, vertexShaderID);
-		GL20.glDetachShader(programID, fragmentShaderID);
-		GL20.glDeleteShader(vertexShaderID);
-		GL20.glDeleteShader(fragmentShaderID);
-		GL20.glDeleteProgram(programID);
+		GLProgramCache.deleteProgram(programID);
 	}
 }
\ No newline at end of file
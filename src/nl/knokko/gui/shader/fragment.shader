@@ -1,11 +1,14 @@
 #version 140
 
 in vec2 textureCoords;
+flat in vec4 fillColor;
+flat in float colorMode;
 
 out vec4 out_Color;
 
 uniform sampler2D guiTexture;
 
 void main(void){
-	out_Color = texture(guiTexture,textureCoords);
+	// colorMode is 1 for solid color fills and 0 for textured quads
+	out_Color = mix(texture(guiTexture,textureCoords), fillColor, colorMode);
 }
\ No newline at end of file
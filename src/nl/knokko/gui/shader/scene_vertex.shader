@@ -0,0 +1,21 @@
+#version 140
+
+in vec2 position;
+in vec2 vertexTextureCoords;
+in vec4 vertexColor;
+in float vertexColorMode;
+
+out vec2 textureCoords;
+flat out vec4 fillColor;
+flat out float colorMode;
+
+// The positions are relative to the area of the window the scene is rendered in
+uniform vec2 screenPosition;
+uniform vec2 size;
+
+void main(void){
+	gl_Position = vec4(screenPosition + position * size, 0.0, 1.0);
+	textureCoords = vertexTextureCoords;
+	fillColor = vertexColor;
+	colorMode = vertexColorMode;
+}
\ No newline at end of file
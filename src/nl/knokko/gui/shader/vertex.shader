@@ -3,13 +3,20 @@
 in vec2 modelPosition;
 
 out vec2 textureCoords;
+flat out vec4 fillColor;
+flat out float colorMode;
 
 uniform vec2 screenPosition;
 uniform vec2 size;
 
 uniform vec4 uv;
 
+uniform vec4 color;
+uniform float useColor;
+
 void main(void){
 	gl_Position = vec4(screenPosition.x + modelPosition.x * size.x, screenPosition.y + modelPosition.y * size.y, 0.0, 1.0);
 	textureCoords = vec2(uv.x + modelPosition.x * (uv.z - uv.x), uv.w - modelPosition.y * (uv.w - uv.y));
+	fillColor = color;
+	colorMode = useColor;
 }
\ No newline at end of file
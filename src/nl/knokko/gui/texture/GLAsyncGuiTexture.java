@@ -0,0 +1,52 @@
+/*******************************************************************************
+ * The MIT License
+ *
+ * Copyright (c) 2018 knokko
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *  
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *******************************************************************************/
+package nl.knokko.gui.texture;
+
+/**
+ * A placeholder texture that is returned by GLGuiTextureLoader.loadTextureAsync. Its texture id will be 0
+ * until the texture has been uploaded, and the GLGuiRenderer will skip quads with texture id 0. After the
+ * upload, all methods will delegate to the loaded texture.
+ */
+public class GLAsyncGuiTexture extends GLManagedGuiTexture {
+	
+	private volatile boolean released;
+
+	public GLAsyncGuiTexture(String texturePath) {
+		super(texturePath, -1, -1, -1, -1);
+	}
+	
+	/**
+	 * @return true if this texture was released before its upload finished, in which case it will never be uploaded
+	 */
+	public boolean isReleased() {
+		return released;
+	}
+	
+	/**
+	 * Should only be called by the texture loader, on the OpenGL thread.
+	 */
+	public void setReleased() {
+		released = true;
+	}
+}
\ No newline at end of file
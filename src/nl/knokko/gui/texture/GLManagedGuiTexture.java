@@ -0,0 +1,171 @@
+/*******************************************************************************
+ * The MIT License
+ *
+ * Copyright (c) 2018 knokko
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *  
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *******************************************************************************/
+package nl.knokko.gui.texture;
+
+/**
+ * A texture that was loaded from a resource path by the GLGuiTextureLoader and whose OpenGL texture can be
+ * evicted when the loader exceeds its memory budget. All methods delegate to the currently loaded texture.
+ * When the texture has been evicted, the texture id will be 0 until the GLGuiRenderer renders it again,
+ * which will let the loader upload it again.
+ */
+public class GLManagedGuiTexture extends GLPartGuiTexture {
+	
+	private final String texturePath;
+	private final int minX, minY, maxX, maxY;
+	
+	private volatile GuiTexture texture;
+	private volatile boolean failed;
+	private volatile boolean evicted;
+	
+	private int lastUsedFrame;
+	
+	/**
+	 * The region should be -1, -1, -1, -1 if the whole image is used.
+	 */
+	public GLManagedGuiTexture(String texturePath, int minX, int minY, int maxX, int maxY) {
+		super(0, 0, 0, 1, 1, 1, 1);
+		this.texturePath = texturePath;
+		this.minX = minX;
+		this.minY = minY;
+		this.maxX = maxX;
+		this.maxY = maxY;
+	}
+	
+	public String getTexturePath() {
+		return texturePath;
+	}
+	
+	public int getRegionMinX() {
+		return minX;
+	}
+	
+	public int getRegionMinY() {
+		return minY;
+	}
+	
+	public int getRegionMaxX() {
+		return maxX;
+	}
+	
+	public int getRegionMaxY() {
+		return maxY;
+	}
+	
+	/**
+	 * @return true if the texture currently has an OpenGL texture
+	 */
+	public boolean isLoaded() {
+		return texture != null;
+	}
+	
+	/**
+	 * @return true if the texture could not be loaded, the reason will have been printed to the error output
+	 * of the texture loader
+	 */
+	public boolean hasFailed() {
+		return failed;
+	}
+	
+	/**
+	 * @return true if the OpenGL texture was deleted to stay within the memory budget of the texture loader
+	 */
+	public boolean isEvicted() {
+		return evicted;
+	}
+	
+	/**
+	 * @return The loaded texture, or null if the texture hasn't been uploaded yet or has been evicted
+	 */
+	public GuiTexture getLoadedTexture() {
+		return texture;
+	}
+	
+	/**
+	 * Should only be called by the texture loader, on the OpenGL thread.
+	 */
+	public void setLoadedTexture(GuiTexture texture) {
+		this.texture = texture;
+		evicted = false;
+	}
+	
+	/**
+	 * Should only be called by the texture loader, on the OpenGL thread, after it deleted the loaded texture.
+	 */
+	public void setEvicted() {
+		texture = null;
+		evicted = true;
+	}
+	
+	/**
+	 * Should only be called by the texture loader.
+	 */
+	public void setFailed() {
+		failed = true;
+		evicted = false;
+	}
+	
+	/**
+	 * @return The last frame of the texture loader in which this texture was rendered
+	 */
+	public int getLastUsedFrame() {
+		return lastUsedFrame;
+	}
+	
+	/**
+	 * Should only be called by the texture loader, on the OpenGL thread.
+	 */
+	public void setLastUsedFrame(int frame) {
+		lastUsedFrame = frame;
+	}
+	
+	@Override
+	public int getTextureID() {
+		GuiTexture loaded = texture;
+		return loaded == null ? 0 : loaded.getTextureID();
+	}
+	
+	@Override
+	public float getMinU() {
+		GuiTexture loaded = texture;
+		return loaded == null ? 0 : loaded.getMinU();
+	}
+	
+	@Override
+	public float getMinV() {
+		GuiTexture loaded = texture;
+		return loaded == null ? 0 : loaded.getMinV();
+	}
+	
+	@Override
+	public float getMaxU() {
+		GuiTexture loaded = texture;
+		return loaded == null ? 1 : loaded.getMaxU();
+	}
+	
+	@Override
+	public float getMaxV() {
+		GuiTexture loaded = texture;
+		return loaded == null ? 1 : loaded.getMaxV();
+	}
+}
@@ -0,0 +1,89 @@
+/*******************************************************************************
+ * The MIT License
+ *
+ * Copyright (c) 2018 knokko
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *  
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *******************************************************************************/
+package nl.knokko.gui.texture.loader;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A simple shelf rectangle packer. Every rectangle is placed on the shelf that wastes the least height,
+ * and a new shelf is opened when none of the existing shelves has room for it.
+ */
+class AtlasPacker {
+	
+	private final int width;
+	private final int height;
+	
+	private final List<Shelf> shelves;
+	private int usedHeight;
+	
+	AtlasPacker(int width, int height){
+		this.width = width;
+		this.height = height;
+		this.shelves = new ArrayList<Shelf>();
+	}
+	
+	/**
+	 * Tries to reserve a rectangle of the given size.
+	 * @return An array {x, y} containing the position of the reserved rectangle, or null if there is no room
+	 */
+	int[] insert(int rectWidth, int rectHeight){
+		if (rectWidth > width || rectHeight > height)
+			return null;
+		Shelf best = null;
+		for (Shelf shelf : shelves) {
+			if (shelf.height >= rectHeight && width - shelf.usedWidth >= rectWidth) {
+				if (best == null || shelf.height < best.height)
+					best = shelf;
+			}
+		}
+		
+		// Don't waste a big shelf on a small rectangle if we can still open a new shelf
+		if (best != null && best.height > rectHeight * 2 && height - usedHeight >= rectHeight)
+			best = null;
+		if (best == null) {
+			if (height - usedHeight < rectHeight)
+				return null;
+			best = new Shelf(usedHeight, rectHeight);
+			shelves.add(best);
+			usedHeight += rectHeight;
+		}
+		int[] result = {best.usedWidth, best.y};
+		best.usedWidth += rectWidth;
+		return result;
+	}
+	
+	private static class Shelf {
+		
+		private final int y;
+		private final int height;
+		
+		private int usedWidth;
+		
+		private Shelf(int y, int height){
+			this.y = y;
+			this.height = height;
+		}
+	}
+}
@@ -29,25 +29,64 @@ import java.io.IOException;
 import java.io.PrintStream;
 import java.net.URL;
 import java.nio.ByteBuffer;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 
 import javax.imageio.ImageIO;
 
 import org.lwjgl.BufferUtils;
 import org.lwjgl.opengl.GL11;
 import org.lwjgl.opengl.GL12;
+import org.lwjgl.opengl.GLContext;
 
+import nl.knokko.gui.render.GLResourceTracker;
+import nl.knokko.gui.render.GLResourceTracker.Type;
+import nl.knokko.gui.render.GLStateCache;
+import nl.knokko.gui.texture.GLAsyncGuiTexture;
 import nl.knokko.gui.texture.GLGuiTexture;
+import nl.knokko.gui.texture.GLManagedGuiTexture;
 import nl.knokko.gui.texture.GLPartGuiTexture;
 import nl.knokko.gui.texture.GuiTexture;
+import nl.knokko.gui.texture.loader.GLTextureCache.TextureKey;
 
 public class GLGuiTextureLoader implements GuiTextureLoader {
 	
-	private final List<Integer> textures;
+	private final GLTextureRegistry textures;
 	
 	private PrintStream errorOutput;
 	
+	private volatile GLTextureAtlas atlas;
+	private int atlasPageSize;
+	private volatile int maxAtlasImageSize;
+	
+	private ExecutorService asyncWorkers;
+	private final Queue<PendingUpload> pendingUploads;
+	private long uploadTimeBudget;
+	private long uploadByteBudget;
+	
+	private boolean usePixelBuffers;
+	private GLPixelUploader pixelUploader;
+	
+	/**
+	 * Whether images can be uploaded with their real size, or null if this should be decided based on the context
+	 */
+	private volatile Boolean nonPowerOf2;
+	
+	private final GLTextureCache cache;
+	private boolean caching;
+	
+	private long memoryBudget;
+	private final Set<GLManagedGuiTexture> managedTextures;
+	private int currentFrame;
+	private long evictionCount;
+	private long reloadCount;
+	
 	private static final int[] POWERS = {
 		1,8,16,32,64,128,256,512,1024,2048,4096,8192,16384,32768,65536,131072,262144,524288,1048576,
 		2097152, 4194304, 8388608, 16777216, 33554432, 67108864, 134217728, 268435456, 536870912, 1073741824
@@ -60,7 +99,7 @@ public class GLGuiTextureLoader implements GuiTextureLoader {
 		return false;
 	}
 	
-	private static int next2Power(int number) {
+	static int next2Power(int number) {
 		for (int index = 0; index < POWERS.length; index++)
 			if (POWERS[index] >= number)
 				return POWERS[index];
@@ -68,111 +107,600 @@ public class GLGuiTextureLoader implements GuiTextureLoader {
 	}
 
 	public GLGuiTextureLoader() {
-		textures = new ArrayList<Integer>();
+		textures = new GLTextureRegistry();
 		errorOutput = System.out;
+		atlasPageSize = 1024;
+		maxAtlasImageSize = 128;
+		pendingUploads = new ConcurrentLinkedQueue<PendingUpload>();
+		uploadTimeBudget = 4000000;
+		uploadByteBudget = 16 * 1024 * 1024;
+		usePixelBuffers = true;
+		cache = new GLTextureCache();
+		managedTextures = Collections.newSetFromMap(new IdentityHashMap<GLManagedGuiTexture,Boolean>());
+	}
+	
+	static BufferedImage padToPowerOf2(BufferedImage source) {
+		BufferedImage image2 = new BufferedImage(next2Power(source.getWidth()), next2Power(source.getHeight()), source.getType());
+		Graphics2D g = image2.createGraphics();
+		g.drawImage(source, 0, 0, null);
+		g.dispose();
+		return image2;
+	}
+	
+	/**
+	 * Enables or disables atlas mode. In atlas mode, images whose width and height are at most
+	 * maxAtlasImageSize are packed into shared atlas pages rather than getting their own texture. The
+	 * returned textures will be GLPartGuiTextures that point to their part of an atlas page. This reduces
+	 * the number of texture binds and allows longer batches in the GLGuiRenderer.
+	 */
+	public GLGuiTextureLoader setAtlas(boolean useAtlas) {
+		if (useAtlas && atlas == null)
+			atlas = new GLTextureAtlas(atlasPageSize, textures);
+		else if (!useAtlas) {
+			// The textures that were already loaded keep using their pages, which will be deleted in clean()
+			atlas = null;
+		}
+		return this;
+	}
+	
+	/**
+	 * Sets the width and height of the atlas pages that will be created after this call.
+	 */
+	public GLGuiTextureLoader setAtlasPageSize(int pageSize) {
+		if (!isPowerOf2(pageSize))
+			throw new IllegalArgumentException("The atlas page size must be a power of 2, but is " + pageSize);
+		atlasPageSize = pageSize;
+		if (atlas != null)
+			atlas = new GLTextureAtlas(pageSize, textures);
+		return this;
+	}
+	
+	/**
+	 * Sets the maximum width and height of images that will be put on atlas pages.
+	 */
+	public GLGuiTextureLoader setMaxAtlasImageSize(int maxSize) {
+		maxAtlasImageSize = maxSize;
+		return this;
+	}
+	
+	public boolean isUsingAtlas() {
+		return atlas != null;
+	}
+	
+	private boolean shouldUseAtlas(BufferedImage source) {
+		return atlas != null && source.getWidth() <= maxAtlasImageSize && source.getHeight() <= maxAtlasImageSize 
+				&& atlas.canContain(source);
+	}
+	
+	private static ByteBuffer convertPixels(BufferedImage source, GLPixelFormat format) {
+		ByteBuffer buffer = BufferUtils.createByteBuffer(format.getByteSize());
+		format.write(source, buffer);
+		buffer.flip();
+		return buffer;
+	}
+	
+	/**
+	 * Enables or disables uploading textures through pixel unpack buffers. This is enabled by default, but
+	 * it will only be used when the OpenGL context supports fence sync objects (OpenGL 3.2).
+	 */
+	public GLGuiTextureLoader setPixelBufferUploads(boolean usePixelBuffers) {
+		this.usePixelBuffers = usePixelBuffers;
+		return this;
+	}
+	
+	/**
+	 * Enables or disables non-power-of-2 mode. In this mode, images are uploaded with their real size
+	 * instead of being padded to the next power of 2. By default, this mode is enabled when the OpenGL
+	 * context supports OpenGL 3.0, which includes the core contexts created by the GLGuiWindow.
+	 */
+	public GLGuiTextureLoader setNonPowerOf2Textures(boolean allowNonPowerOf2) {
+		nonPowerOf2 = allowNonPowerOf2;
+		return this;
+	}
+	
+	/**
+	 * Queries the capabilities of the OpenGL context, which is only possible on the OpenGL thread. The
+	 * GLGuiRenderer calls this in its init method, so that loadTextureAsync can be called on other threads.
+	 */
+	public void init() {
+		allowsNonPowerOf2();
+	}
+	
+	/**
+	 * This method must be called on the OpenGL thread the first time, which init does.
+	 */
+	private boolean allowsNonPowerOf2() {
+		if (nonPowerOf2 == null)
+			nonPowerOf2 = GLContext.getCapabilities().OpenGL30;
+		return nonPowerOf2;
+	}
+	
+	private boolean needsPadding(BufferedImage source, boolean allowNonPowerOf2) {
+		return !allowNonPowerOf2 && (!isPowerOf2(source.getWidth()) || !isPowerOf2(source.getHeight()));
+	}
+	
+	private boolean shouldUsePixelBuffers() {
+		if (usePixelBuffers && pixelUploader == null) {
+			if (GLContext.getCapabilities().OpenGL32)
+				pixelUploader = new GLPixelUploader();
+			else
+				usePixelBuffers = false;
+		}
+		return usePixelBuffers;
+	}
+	
+	private int createTexture(BufferedImage source) {
+		GLPixelFormat format = GLPixelFormat.of(source);
+		if (shouldUsePixelBuffers()) {
+			int textureID = generateTexture(format.getTextureSize());
+			if (!pixelUploader.upload(format, source))
+				format.texImage2D(convertPixels(source, format));
+			evictIfNeeded();
+			return textureID;
+		}
+		return createTexture(format, convertPixels(source, format));
+	}
+	
+	private int createTexture(GLPixelFormat format, ByteBuffer buffer) {
+		int textureID = generateTexture(format.getTextureSize());
+		format.texImage2D(buffer);
+		evictIfNeeded();
+		return textureID;
+	}
+	
+	/**
+	 * Generates a new texture, binds it, sets its parameters and registers it with the given size.
+	 */
+	private int generateTexture(long byteSize) {
+		int textureID = GL11.glGenTextures();
+		GLResourceTracker.created(Type.TEXTURE, textureID, byteSize);
+		GLStateCache.forceBindTexture(textureID);
+		GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_WRAP_S, GL12.GL_CLAMP_TO_EDGE);
+		GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_WRAP_T, GL12.GL_CLAMP_TO_EDGE);
+		GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_MIN_FILTER, GL11.GL_LINEAR);
+		GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_MAG_FILTER, GL11.GL_LINEAR);
+		textures.add(textureID, byteSize, false);
+		return textureID;
+	}
+	
+	/**
+	 * Enables or disables the texture cache, which is disabled by default. When caching is enabled, loading the
+	 * same resource path or an image with the same pixels again will return the texture that was loaded before
+	 * rather than uploading a new texture. Cached textures are reference counted: they will be deleted when
+	 * they are released as often as they were loaded. The cache keeps a copy of the pixels of every image it
+	 * contains, to tell images with the same content hash apart.
+	 */
+	public GLGuiTextureLoader setCaching(boolean caching) {
+		this.caching = caching;
+		return this;
+	}
+	
+	/**
+	 * @return The number of texture loads that could use a texture from the cache
+	 */
+	public long getCacheHits() {
+		return cache.getHits();
+	}
+	
+	/**
+	 * @return The number of texture loads that had to upload a new texture while caching was enabled
+	 */
+	public long getCacheMisses() {
+		return cache.getMisses();
+	}
+	
+	/**
+	 * Releases a texture that was loaded by this loader. When caching is enabled, the texture will be deleted
+	 * when all loads that returned it have been released. Textures on an atlas page are removed from the cache,
+	 * but their space on the atlas page is not reclaimed. Textures from loadTextureAsync that are released before
+	 * their upload finished will never be uploaded.
+	 */
+	public void release(GuiTexture texture) {
+		if (cache.contains(texture)) {
+			if (cache.release(texture))
+				deleteTexture(texture);
+		} else if (texture instanceof GLManagedGuiTexture) {
+			GLManagedGuiTexture managed = (GLManagedGuiTexture) texture;
+			if (managedTextures.contains(managed))
+				deleteTexture(managed);
+			else if (managed.getLoadedTexture() != null) {
+				
+				// Asynchronous loads that found their texture in the cache only refer to it
+				release(managed.getLoadedTexture());
+			} else if (managed instanceof GLAsyncGuiTexture) {
+				
+				// The upload hasn't finished yet, so processUploads should drop it
+				((GLAsyncGuiTexture) managed).setReleased();
+			}
+		} else if (textures.contains(texture.getTextureID()) && !textures.isAtlasPage(texture.getTextureID())) {
+			deleteTexture(texture);
+		}
+	}
+	
+	private void deleteTexture(GuiTexture texture) {
+		if (texture instanceof GLManagedGuiTexture) {
+			GLManagedGuiTexture managed = (GLManagedGuiTexture) texture;
+			managedTextures.remove(managed);
+			texture = managed.getLoadedTexture();
+			managed.setLoadedTexture(null);
+			if (texture == null)
+				return;
+		}
+		int textureID = texture.getTextureID();
+		textures.remove(textureID);
+		GLStateCache.deleteTexture(textureID);
+	}
+	
+	/**
+	 * Sets the amount of video memory that the textures of this loader should use at most, or 0 to disable
+	 * the budget, which is the default. When the budget is enabled, textures loaded from a resource path will
+	 * be GLManagedGuiTextures. When an upload exceeds the budget, the managed textures that haven't been
+	 * rendered for the longest time are evicted until the textures fit in the budget again. Evicted textures
+	 * are uploaded again the next time the GLGuiRenderer renders them. Textures that were loaded from a
+	 * BufferedImage or put on an atlas page are never evicted, so they can keep the usage above the budget.
+	 */
+	public GLGuiTextureLoader setMemoryBudget(long maxBytes) {
+		memoryBudget = maxBytes;
+		return this;
+	}
+	
+	public long getMemoryBudget() {
+		return memoryBudget;
+	}
+	
+	/**
+	 * @return The estimated amount of video memory used by all textures of this loader, including atlas pages
+	 */
+	public long getMemoryUsage() {
+		return textures.getTotalBytes();
+	}
+	
+	/**
+	 * @return The number of OpenGL textures that currently exist, including atlas pages
+	 */
+	public int getTextureCount() {
+		return textures.size();
+	}
+	
+	public long getEvictionCount() {
+		return evictionCount;
+	}
+	
+	/**
+	 * @return The number of times an evicted texture had to be uploaded again
+	 */
+	public long getReloadCount() {
+		return reloadCount;
+	}
+	
+	/**
+	 * Starts a new frame for the least recently used bookkeeping. The GLGuiRenderer calls this when it starts
+	 * rendering. Textures that were rendered in the current frame are never evicted.
+	 */
+	public void startFrame() {
+		currentFrame++;
+	}
+	
+	/**
+	 * Marks the given texture as used in the current frame and uploads it again if it was evicted. The
+	 * GLGuiRenderer calls this before it renders a managed texture.
+	 */
+	public void prepareTexture(GLManagedGuiTexture texture) {
+		while (texture != null) {
+			texture.setLastUsedFrame(currentFrame);
+			if (texture.isEvicted())
+				reload(texture);
+			GuiTexture loaded = texture.getLoadedTexture();
+			texture = loaded instanceof GLManagedGuiTexture ? (GLManagedGuiTexture) loaded : null;
+		}
+	}
+	
+	private void reload(GLManagedGuiTexture texture) {
+		try {
+			uploadManagedTexture(texture, readImage(texture.getTexturePath()));
+			reloadCount++;
+		} catch (IOException e) {
+			errorOutput.println("Can't reload texture '" + texture.getTexturePath() + "': " + e.getMessage());
+			e.printStackTrace(errorOutput);
+			texture.setFailed();
+		}
+	}
+	
+	private void uploadManagedTexture(GLManagedGuiTexture texture, BufferedImage image) {
+		
+		// Managed textures must have their own texture id, so they can't be put on an atlas page
+		if (texture.getRegionMinX() == -1)
+			texture.setLoadedTexture(uploadTexture(image, false));
+		else
+			texture.setLoadedTexture(uploadTexture(image, texture.getRegionMinX(), texture.getRegionMinY(), 
+					texture.getRegionMaxX(), texture.getRegionMaxY(), false));
+		texture.setLastUsedFrame(currentFrame);
+	}
+	
+	private void evictIfNeeded() {
+		if (memoryBudget <= 0)
+			return;
+		while (textures.getTotalBytes() > memoryBudget) {
+			GLManagedGuiTexture leastRecent = null;
+			for (GLManagedGuiTexture candidate : managedTextures) {
+				if (candidate.isLoaded() && candidate.getLastUsedFrame() != currentFrame 
+						&& (leastRecent == null || candidate.getLastUsedFrame() < leastRecent.getLastUsedFrame()))
+					leastRecent = candidate;
+			}
+			if (leastRecent == null)
+				return;
+			int textureID = leastRecent.getLoadedTexture().getTextureID();
+			textures.remove(textureID);
+			GLStateCache.deleteTexture(textureID);
+			leastRecent.setEvicted();
+			evictionCount++;
+		}
 	}
 	
 	@Override
 	public GuiTexture loadTexture(BufferedImage source, int minX, int minY, int maxX, int maxY) {
-		if (isPowerOf2(source.getWidth()) && isPowerOf2(source.getHeight())) {
-			boolean allowAlpha = source.getTransparency() != BufferedImage.OPAQUE;
+		if (!caching)
+			return uploadTexture(source, minX, minY, maxX, maxY, true);
+		TextureKey key = TextureKey.forImage(source, minX, minY, maxX, maxY);
+		GuiTexture texture = cache.acquire(key);
+		if (texture == null) {
+			boolean onAtlas = shouldUseAtlas(source);
+			texture = uploadTexture(source, minX, minY, maxX, maxY, true);
+			cache.add(key, texture, !onAtlas);
+		}
+		return texture;
+	}
+	
+	@Override
+	public GuiTexture loadTexture(BufferedImage source) {
+		if (!caching)
+			return uploadTexture(source, true);
+		TextureKey key = TextureKey.forImage(source, -1, -1, -1, -1);
+		GuiTexture texture = cache.acquire(key);
+		if (texture == null) {
+			boolean onAtlas = shouldUseAtlas(source);
+			texture = uploadTexture(source, true);
+			cache.add(key, texture, !onAtlas);
+		}
+		return texture;
+	}
+	
+	private GuiTexture uploadTexture(BufferedImage source, int minX, int minY, int maxX, int maxY, boolean allowAtlas) {
+		if (allowAtlas && shouldUseAtlas(source)) {
+			return atlas.add(source, minX, minY, maxX, maxY);
+		}
+		if (!needsPadding(source, allowsNonPowerOf2())) {
 			int width = source.getWidth();
 			int height = source.getHeight();
-			ByteBuffer buffer = BufferUtils.createByteBuffer(source.getWidth() * source.getHeight() * (allowAlpha ? 4 : 3)); //4 for RGBA, 3 for RGB
-	    	for(int y = 0; y < height; y++){
-	        	for(int x = 0; x < width; x++){
-	        		int rgb = source.getRGB(x, y);;
-	        		buffer.put((byte) (rgb >> 16));
-	        		buffer.put((byte) (rgb >> 8));
-	        		buffer.put((byte) (rgb >> 0));
-	        		if(allowAlpha)
-	        			buffer.put((byte) (rgb >> 24));
-	        	}
-	    	}
-	    	buffer.flip();
-	    	int textureID = GL11.glGenTextures();
-	    	GL11.glBindTexture(GL11.GL_TEXTURE_2D, textureID);
-	    	GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_WRAP_S, GL12.GL_CLAMP_TO_EDGE);
-	    	GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_WRAP_T, GL12.GL_CLAMP_TO_EDGE);
-	    	GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_MIN_FILTER, GL11.GL_LINEAR);
-	    	GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_MAG_FILTER, GL11.GL_LINEAR);
-	    	GL11.glTexImage2D(GL11.GL_TEXTURE_2D, 0, allowAlpha ? GL11.GL_RGBA8 : GL11.GL_RGB8, source.getWidth(), source.getHeight(), 0, allowAlpha ? GL11.GL_RGBA : GL11.GL_RGB, GL11.GL_UNSIGNED_BYTE, buffer);
-	    	textures.add(textureID);
+			int textureID = createTexture(source);
 	    	return new GLPartGuiTexture(textureID, (float) minX / width, (float) minY / height, (float) maxX / width, (float) maxY / height, width, height);
 		} else {
-			BufferedImage image2 = new BufferedImage(next2Power(source.getWidth()), next2Power(source.getHeight()), source.getType());
-			Graphics2D g = image2.createGraphics();
-			g.drawImage(source, 0, 0, null);
-			g.dispose();
-			return loadTexture(image2, minX, minY, maxX, maxY);
+			return uploadTexture(padToPowerOf2(source), minX, minY, maxX, maxY, allowAtlas);
 		}
 	}
 
-	@Override
-	public GuiTexture loadTexture(BufferedImage source) {
-		if (isPowerOf2(source.getWidth()) && isPowerOf2(source.getHeight())) {
-			boolean allowAlpha = source.getTransparency() != BufferedImage.OPAQUE;
-			ByteBuffer buffer = BufferUtils.createByteBuffer(source.getWidth() * source.getHeight() * (allowAlpha ? 4 : 3)); //4 for RGBA, 3 for RGB
-	    	for(int y = 0; y < source.getHeight(); y++){
-	        	for(int x = 0; x < source.getWidth(); x++){
-	        		int rgb = source.getRGB(x, y);
-	        		buffer.put((byte) (rgb >> 16));
-	        		buffer.put((byte) (rgb >> 8));
-	        		buffer.put((byte) (rgb >> 0));
-	        		if(allowAlpha)
-	        			buffer.put((byte) (rgb >> 24));
-	        	}
-	    	}
-	    	buffer.flip();
-	    	int textureID = GL11.glGenTextures();
-	    	GL11.glBindTexture(GL11.GL_TEXTURE_2D, textureID);
-	    	GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_WRAP_S, GL12.GL_CLAMP_TO_EDGE);
-	    	GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_WRAP_T, GL12.GL_CLAMP_TO_EDGE);
-	    	GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_MIN_FILTER, GL11.GL_LINEAR);
-	    	GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_MAG_FILTER, GL11.GL_LINEAR);
-	    	GL11.glTexImage2D(GL11.GL_TEXTURE_2D, 0, allowAlpha ? GL11.GL_RGBA8 : GL11.GL_RGB8, source.getWidth(), source.getHeight(), 0, allowAlpha ? GL11.GL_RGBA : GL11.GL_RGB, GL11.GL_UNSIGNED_BYTE, buffer);
-	    	textures.add(textureID);
-	    	return new GLGuiTexture(textureID, source.getWidth(), source.getHeight());
+	private GuiTexture uploadTexture(BufferedImage source, boolean allowAtlas) {
+		if (allowAtlas && shouldUseAtlas(source)) {
+			return atlas.add(source, 0, 0, source.getWidth(), source.getHeight());
+		}
+		if (!needsPadding(source, allowsNonPowerOf2())) {
+	    	return new GLGuiTexture(createTexture(source), source.getWidth(), source.getHeight());
 		} else {
-			BufferedImage image2 = new BufferedImage(next2Power(source.getWidth()), next2Power(source.getHeight()), source.getType());
-			Graphics2D g = image2.createGraphics();
-			g.drawImage(source, 0, 0, null);
-			g.dispose();
-			return loadTexture(image2, 0, 0, source.getWidth() - 1, source.getHeight() - 1);
+			return uploadTexture(padToPowerOf2(source), 0, 0, source.getWidth() - 1, source.getHeight() - 1, allowAtlas);
 		}
 	}
 
 	@Override
 	public GuiTexture loadTexture(String texturePath, int minX, int minY, int maxX, int maxY) {
-		try {
-			URL resource = GLGuiTextureLoader.class.getClassLoader().getResource(texturePath);
-			if (resource == null) {
-				throw new IOException("Can't find texture " + texturePath);
-			}
-			BufferedImage image = ImageIO.read(resource);
-			return loadTexture(image, minX, minY, maxX, maxY);
-		} catch (IOException e) {
-			errorOutput.println("Can't load texture '" + texturePath + "': " + e.getMessage());
-			e.printStackTrace(errorOutput);
-			return null;
-		}
+		return loadPathTexture(texturePath, minX, minY, maxX, maxY);
 	}
 
 	@Override
 	public GuiTexture loadTexture(String texturePath) {
+		return loadPathTexture(texturePath, -1, -1, -1, -1);
+	}
+	
+	/**
+	 * Loads the texture at the given path. The region should be -1, -1, -1, -1 to load the whole image.
+	 */
+	private GuiTexture loadPathTexture(String texturePath, int minX, int minY, int maxX, int maxY) {
+		TextureKey pathKey = null;
+		if (caching) {
+			pathKey = TextureKey.forPath(texturePath, minX, minY, maxX, maxY);
+			GuiTexture cached = cache.acquire(pathKey);
+			if (cached != null)
+				return cached;
+		}
 		try {
-			URL resource = GLGuiTextureLoader.class.getClassLoader().getResource(texturePath);
-			if (resource == null) {
-				throw new IOException("Can't find texture " + texturePath);
+			BufferedImage image = readImage(texturePath);
+			if (memoryBudget > 0 && !shouldUseAtlas(image)) {
+				
+				// The texture can be evicted because it can be read from its path again
+				GLManagedGuiTexture managed = new GLManagedGuiTexture(texturePath, minX, minY, maxX, maxY);
+				uploadManagedTexture(managed, image);
+				managedTextures.add(managed);
+				if (pathKey != null)
+					cache.add(pathKey, managed, true);
+				return managed;
 			}
-			BufferedImage image = ImageIO.read(resource);
-			return loadTexture(image);
+			GuiTexture texture = minX == -1 ? loadTexture(image) : loadTexture(image, minX, minY, maxX, maxY);
+			if (pathKey != null)
+				cache.addKey(pathKey, texture);
+			return texture;
 		} catch (IOException e) {
 			errorOutput.println("Can't load texture '" + texturePath + "': " + e.getMessage());
 			e.printStackTrace(errorOutput);
 			return null;
 		}
 	}
+	
+	private static BufferedImage readImage(String texturePath) throws IOException {
+		URL resource = GLGuiTextureLoader.class.getClassLoader().getResource(texturePath);
+		if (resource == null) {
+			throw new IOException("Can't find texture " + texturePath);
+		}
+		return ImageIO.read(resource);
+	}
+
+	/**
+	 * Loads the texture at the given path without blocking the OpenGL thread. The image will be decoded and
+	 * converted on a worker thread, after which the upload will be done by processUploads. The returned
+	 * placeholder will have texture id 0 until the upload is finished, and the GLGuiRenderer won't render
+	 * anything for it until then. This method can be called on any thread after init has been called.
+	 */
+	public GLAsyncGuiTexture loadTextureAsync(final String texturePath) {
+		final GLAsyncGuiTexture placeholder = new GLAsyncGuiTexture(texturePath);
+		if (caching) {
+			GuiTexture cached = cache.acquire(TextureKey.forPath(texturePath, -1, -1, -1, -1));
+			if (cached instanceof GLAsyncGuiTexture)
+				return (GLAsyncGuiTexture) cached;
+			if (cached != null) {
+				placeholder.setLoadedTexture(cached);
+				return placeholder;
+			}
+		}
+		
+		// The capabilities of the context were queried by init on the OpenGL thread
+		final boolean allowNonPowerOf2 = allowsNonPowerOf2();
+		final boolean useCache = caching;
+		final boolean managed = memoryBudget > 0;
+		getAsyncWorkers().execute(new Runnable() {
+
+			@Override
+			public void run() {
+				try {
+					pendingUploads.add(prepareUpload(placeholder, readImage(texturePath), allowNonPowerOf2, useCache, managed));
+				} catch (Exception e) {
+					errorOutput.println("Can't load texture '" + texturePath + "': " + e.getMessage());
+					e.printStackTrace(errorOutput);
+					placeholder.setFailed();
+				}
+			}
+		});
+		return placeholder;
+	}
+	
+	/**
+	 * Sets the maximum amount of time and data that processUploads may spend on uploading asynchronously
+	 * loaded textures. At least 1 texture will be uploaded per call if there are pending uploads, even if
+	 * it exceeds the budget.
+	 */
+	public GLGuiTextureLoader setUploadBudget(long maxNanoSeconds, long maxBytes) {
+		uploadTimeBudget = maxNanoSeconds;
+		uploadByteBudget = maxBytes;
+		return this;
+	}
+	
+	/**
+	 * Uploads the textures that were loaded by loadTextureAsync and are ready for uploading, until the
+	 * upload budget is exceeded. This method must be called on the OpenGL thread, the GLGuiWindow calls
+	 * it once per frame.
+	 * @return The number of textures that were uploaded
+	 */
+	public int processUploads() {
+		long startTime = System.nanoTime();
+		long uploadedBytes = 0;
+		int uploadCount = 0;
+		PendingUpload upload;
+		while ((upload = pendingUploads.peek()) != null) {
+			if (uploadCount > 0 && (System.nanoTime() - startTime >= uploadTimeBudget || uploadedBytes + upload.byteSize > uploadByteBudget))
+				break;
+			pendingUploads.poll();
+			if (upload.placeholder.isReleased())
+				continue;
+			upload.placeholder.setLoadedTexture(finishUpload(upload));
+			uploadedBytes += upload.byteSize;
+			uploadCount++;
+		}
+		return uploadCount;
+	}
+	
+	public boolean hasPendingUploads() {
+		return !pendingUploads.isEmpty();
+	}
+	
+	private synchronized ExecutorService getAsyncWorkers() {
+		if (asyncWorkers == null) {
+			int threads = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() - 1));
+			asyncWorkers = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+
+				@Override
+				public Thread newThread(Runnable task) {
+					Thread thread = new Thread(task, "GLGui texture loader");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		return asyncWorkers;
+	}
+	
+	/**
+	 * Does the part of loadTexture(BufferedImage) that doesn't need OpenGL. This is called on a worker thread.
+	 */
+	private PendingUpload prepareUpload(GLAsyncGuiTexture placeholder, BufferedImage source, boolean allowNonPowerOf2, 
+			boolean useCache, boolean managed) {
+		if (shouldUseAtlas(source)) {
+			
+			// Atlas images are small and their data is converted by the atlas itself
+			return new PendingUpload(placeholder, source, null, null, false, null, useCache, false);
+		}
+		
+		// Computing the content hash is relatively expensive, so do it on the worker thread
+		// Managed textures must not share their texture, so they are only cached by their path
+		TextureKey imageKey = useCache && !managed ? TextureKey.forImage(source, -1, -1, -1, -1) : null;
+		boolean padded = needsPadding(source, allowNonPowerOf2);
+		BufferedImage image = padded ? padToPowerOf2(source) : source;
+		GLPixelFormat format = GLPixelFormat.of(image);
+		return new PendingUpload(placeholder, source, format, convertPixels(image, format), padded, imageKey, useCache, managed);
+	}
+	
+	/**
+	 * Does the part of loadTexture(BufferedImage) that needs OpenGL. This is called on the OpenGL thread.
+	 */
+	private GuiTexture finishUpload(PendingUpload upload) {
+		TextureKey pathKey = null;
+		if (upload.useCache) {
+			
+			// Another load of the same path or the same image may have finished in the mean time
+			pathKey = TextureKey.forPath(upload.placeholder.getTexturePath(), -1, -1, -1, -1);
+			GuiTexture cached = cache.acquire(pathKey);
+			if (cached == null && upload.imageKey != null) {
+				cached = cache.acquire(upload.imageKey);
+				if (cached != null)
+					cache.addKey(pathKey, cached);
+			}
+			if (cached != null)
+				return cached;
+		}
+		GuiTexture texture;
+		if (upload.format == null) {
+			texture = loadTexture(upload.source);
+		} else {
+			int textureID = createTexture(upload.format, upload.pixels);
+			if (upload.padded) {
+				float width = upload.format.width;
+				float height = upload.format.height;
+				texture = new GLPartGuiTexture(textureID, 0, 0, (upload.source.getWidth() - 1) / width, (upload.source.getHeight() - 1) / height, 
+						upload.format.width, upload.format.height);
+			} else {
+				texture = new GLGuiTexture(textureID, upload.source.getWidth(), upload.source.getHeight());
+			}
+			if (upload.managed) {
+				upload.placeholder.setLoadedTexture(texture);
+				upload.placeholder.setLastUsedFrame(currentFrame);
+				managedTextures.add(upload.placeholder);
+				if (pathKey != null)
+					cache.add(pathKey, upload.placeholder, true);
+				return texture;
+			}
+			if (upload.imageKey != null)
+				cache.add(upload.imageKey, texture, true);
+		}
+		if (pathKey != null)
+			cache.addKey(pathKey, texture);
+		return texture;
+	}
 
 	@Override
 	public GuiTextureLoader setErrorOutput(PrintStream output) {
@@ -181,7 +709,49 @@ public class GLGuiTextureLoader implements GuiTextureLoader {
 	}
 	
 	public void clean(){
-		for(int texture : textures)
-			GL11.glDeleteTextures(texture);
+		if (asyncWorkers != null)
+			asyncWorkers.shutdownNow();
+		pendingUploads.clear();
+		cache.clear();
+		if (pixelUploader != null) {
+			pixelUploader.clean();
+			pixelUploader = null;
+		}
+		managedTextures.clear();
+		for(int texture : textures.toArray())
+			GLStateCache.deleteTexture(texture);
+		textures.clear();
+	}
+	
+	private static class PendingUpload {
+		
+		private final GLAsyncGuiTexture placeholder;
+		private final BufferedImage source;
+		
+		// The format and pixels are null if the image should be put on an atlas page
+		private final GLPixelFormat format;
+		private final ByteBuffer pixels;
+		private final boolean padded;
+		
+		// The image key is null if the texture shouldn't be cached or if it should be put on an atlas page
+		private final TextureKey imageKey;
+		
+		private final boolean useCache;
+		private final boolean managed;
+		
+		private final long byteSize;
+		
+		private PendingUpload(GLAsyncGuiTexture placeholder, BufferedImage source, GLPixelFormat format, ByteBuffer pixels, 
+				boolean padded, TextureKey imageKey, boolean useCache, boolean managed) {
+			this.placeholder = placeholder;
+			this.source = source;
+			this.format = format;
+			this.pixels = pixels;
+			this.padded = padded;
+			this.imageKey = imageKey;
+			this.useCache = useCache;
+			this.managed = managed;
+			this.byteSize = pixels == null ? source.getWidth() * source.getHeight() * 4L : pixels.remaining();
+		}
 	}
 }
\ No newline at end of file
@@ -0,0 +1,254 @@
+/*******************************************************************************
+ * The MIT License
+ *
+ * Copyright (c) 2018 knokko
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *  
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *******************************************************************************/
+package nl.knokko.gui.texture.loader;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.WritableRaster;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL12;
+
+import nl.knokko.gui.render.GLFrameProfiler;
+
+/**
+ * Describes how the pixels of a BufferedImage should be uploaded to OpenGL and writes them into a buffer.
+ * The common image types are copied straight from their raster and uploaded with a matching GL format and
+ * type, so no per-pixel swizzling is needed. Other image types are converted with getRGB, in parallel for
+ * big images.
+ */
+class GLPixelFormat {
+	
+	private static final int LAYOUT_INT = 0;
+	private static final int LAYOUT_4BYTE_ABGR = 1;
+	private static final int LAYOUT_3BYTE_BGR = 2;
+	private static final int LAYOUT_GENERIC = 3;
+	
+	/**
+	 * Images with at least this amount of pixels will be converted in parallel when they need the generic path
+	 */
+	private static final int PARALLEL_THRESHOLD = 1024 * 1024;
+	
+	static GLPixelFormat of(BufferedImage source){
+		boolean allowAlpha = source.getTransparency() != BufferedImage.OPAQUE;
+		int width = source.getWidth();
+		int height = source.getHeight();
+		int internalFormat = allowAlpha ? GL11.GL_RGBA8 : GL11.GL_RGB8;
+		int type = source.getType();
+		
+		// When the internal format is RGB8, the alpha component of TYPE_INT_RGB will simply be ignored
+		if ((type == BufferedImage.TYPE_INT_ARGB || type == BufferedImage.TYPE_INT_RGB) && hasPlainRaster(source, 1))
+			return new GLPixelFormat(LAYOUT_INT, width, height, internalFormat, GL12.GL_BGRA, GL12.GL_UNSIGNED_INT_8_8_8_8_REV, 4, 4);
+		
+		// The bytes A, B, G, R form the integer RGBA when they are read in little endian order
+		if (type == BufferedImage.TYPE_4BYTE_ABGR && ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN && hasPlainRaster(source, 4))
+			return new GLPixelFormat(LAYOUT_4BYTE_ABGR, width, height, internalFormat, GL11.GL_RGBA, GL12.GL_UNSIGNED_INT_8_8_8_8, 4, 4);
+		if (type == BufferedImage.TYPE_3BYTE_BGR && hasPlainRaster(source, 3))
+			return new GLPixelFormat(LAYOUT_3BYTE_BGR, width, height, internalFormat, GL12.GL_BGR, GL11.GL_UNSIGNED_BYTE, 3, 1);
+		
+		// getRGB gives ARGB integers, so they can be uploaded just like TYPE_INT_ARGB
+		return new GLPixelFormat(LAYOUT_GENERIC, width, height, internalFormat, GL12.GL_BGRA, GL12.GL_UNSIGNED_INT_8_8_8_8_REV, 4, 4);
+	}
+	
+	/**
+	 * Checks that the raster of the image is not a part of a bigger raster, so its data can be copied directly.
+	 */
+	private static boolean hasPlainRaster(BufferedImage source, int elementsPerPixel){
+		WritableRaster raster = source.getRaster();
+		DataBuffer data = raster.getDataBuffer();
+		return raster.getSampleModelTranslateX() == 0 && raster.getSampleModelTranslateY() == 0 && data.getNumBanks() == 1 
+				&& data.getOffset() == 0 && data.getSize() == source.getWidth() * source.getHeight() * elementsPerPixel;
+	}
+	
+	private final int layout;
+	
+	final int width;
+	final int height;
+	final int internalFormat;
+	final int format;
+	final int type;
+	final int bytesPerPixel;
+	final int unpackAlignment;
+	
+	private GLPixelFormat(int layout, int width, int height, int internalFormat, int format, int type, int bytesPerPixel, int unpackAlignment){
+		this.layout = layout;
+		this.width = width;
+		this.height = height;
+		this.internalFormat = internalFormat;
+		this.format = format;
+		this.type = type;
+		this.bytesPerPixel = bytesPerPixel;
+		this.unpackAlignment = unpackAlignment;
+	}
+	
+	int getByteSize(){
+		return width * height * bytesPerPixel;
+	}
+	
+	/**
+	 * @return The estimated amount of video memory that a texture with this format will use
+	 */
+	long getTextureSize(){
+		return width * (long) height * (internalFormat == GL11.GL_RGBA8 ? 4 : 3);
+	}
+	
+	/**
+	 * Uploads the given pixels to the texture that is currently bound to GL_TEXTURE_2D.
+	 */
+	void texImage2D(ByteBuffer pixels){
+		GL11.glPixelStorei(GL11.GL_UNPACK_ALIGNMENT, unpackAlignment);
+		GL11.glTexImage2D(GL11.GL_TEXTURE_2D, 0, internalFormat, width, height, 0, format, type, pixels);
+		GLFrameProfiler.count(GLFrameProfiler.Counter.TEXTURE_UPLOADS);
+		if (unpackAlignment != 4)
+			GL11.glPixelStorei(GL11.GL_UNPACK_ALIGNMENT, 4);
+	}
+	
+	/**
+	 * Uploads the pixels at the given offset in the bound pixel unpack buffer to the texture that is currently
+	 * bound to GL_TEXTURE_2D.
+	 */
+	void texImage2D(long bufferOffset){
+		GL11.glPixelStorei(GL11.GL_UNPACK_ALIGNMENT, unpackAlignment);
+		GL11.glTexImage2D(GL11.GL_TEXTURE_2D, 0, internalFormat, width, height, 0, format, type, bufferOffset);
+		GLFrameProfiler.count(GLFrameProfiler.Counter.TEXTURE_UPLOADS);
+		if (unpackAlignment != 4)
+			GL11.glPixelStorei(GL11.GL_UNPACK_ALIGNMENT, 4);
+	}
+	
+	/**
+	 * Writes the pixels of source into dest, starting at the position of dest. After this method returns,
+	 * the position of dest will be right after the last pixel.
+	 */
+	void write(BufferedImage source, ByteBuffer dest){
+		int start = dest.position();
+		if (layout == LAYOUT_INT) {
+			int[] pixels = ((DataBufferInt) source.getRaster().getDataBuffer()).getData();
+			intView(dest, start).put(pixels);
+		} else if (layout == LAYOUT_4BYTE_ABGR || layout == LAYOUT_3BYTE_BGR) {
+			byte[] pixels = ((DataBufferByte) source.getRaster().getDataBuffer()).getData();
+			dest.put(pixels);
+		} else if (width * height >= PARALLEL_THRESHOLD && Runtime.getRuntime().availableProcessors() > 1) {
+			writeGenericParallel(source, dest, start);
+		} else {
+			writeGenericRows(source, dest, start, 0, height);
+		}
+		dest.position(start + getByteSize());
+	}
+	
+	/**
+	 * Computes a fast 64-bit hash of the pixels of source. The raster data is hashed directly for the common
+	 * image types, so this is much cheaper than converting the image.
+	 */
+	long contentHash(BufferedImage source){
+		long hash = HASH_SEED ^ (width * 31L + height);
+		if (layout == LAYOUT_INT) {
+			int[] pixels = ((DataBufferInt) source.getRaster().getDataBuffer()).getData();
+			for (int pixel : pixels)
+				hash = hashRound(hash, pixel);
+		} else if (layout == LAYOUT_4BYTE_ABGR || layout == LAYOUT_3BYTE_BGR) {
+			byte[] pixels = ((DataBufferByte) source.getRaster().getDataBuffer()).getData();
+			int index = 0;
+			for (; index + 3 < pixels.length; index += 4) {
+				hash = hashRound(hash, (pixels[index] & 0xFF) | (pixels[index + 1] & 0xFF) << 8 
+						| (pixels[index + 2] & 0xFF) << 16 | (pixels[index + 3] & 0xFF) << 24);
+			}
+			for (; index < pixels.length; index++)
+				hash = hashRound(hash, pixels[index]);
+		} else {
+			int[] row = new int[width];
+			for (int y = 0; y < height; y++) {
+				source.getRGB(0, y, width, 1, row, 0, width);
+				for (int pixel : row)
+					hash = hashRound(hash, pixel);
+			}
+		}
+		
+		// Final avalanche, so that all bits of the hash depend on the last pixels
+		hash ^= hash >>> 33;
+		hash *= 0xFF51AFD7ED558CCDL;
+		hash ^= hash >>> 33;
+		return hash;
+	}
+	
+	private static final long HASH_SEED = 0x9E3779B97F4A7C15L;
+	
+	private static long hashRound(long hash, int value){
+		return Long.rotateLeft(hash ^ (value * 0xC2B2AE3D27D4EB4FL), 31) * 0x9E3779B185EBCA87L;
+	}
+	
+	private static IntBuffer intView(ByteBuffer dest, int position){
+		ByteBuffer view = dest.duplicate();
+		view.position(position);
+		return view.slice().order(ByteOrder.nativeOrder()).asIntBuffer();
+	}
+	
+	private void writeGenericRows(BufferedImage source, ByteBuffer dest, int start, int minY, int boundY){
+		IntBuffer target = intView(dest, start + minY * width * 4);
+		int rowsPerStep = Math.max(1, 4096 / Math.max(1, width));
+		int[] pixels = new int[rowsPerStep * width];
+		for (int y = minY; y < boundY; y += rowsPerStep) {
+			int rows = Math.min(rowsPerStep, boundY - y);
+			source.getRGB(0, y, width, rows, pixels, 0, width);
+			target.put(pixels, 0, rows * width);
+		}
+	}
+	
+	private void writeGenericParallel(final BufferedImage source, final ByteBuffer dest, final int start){
+		int bands = Runtime.getRuntime().availableProcessors() * 2;
+		int rowsPerBand = (height + bands - 1) / bands;
+		List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(bands);
+		for (int y = 0; y < height; y += rowsPerBand) {
+			final int minY = y;
+			final int boundY = Math.min(height, y + rowsPerBand);
+			tasks.add(new Callable<Void>() {
+
+				@Override
+				public Void call() {
+					writeGenericRows(source, dest, start, minY, boundY);
+					return null;
+				}
+			});
+		}
+		try {
+			for (Future<Void> future : ForkJoinPool.commonPool().invokeAll(tasks))
+				future.get();
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted while converting the pixels of an image", ex);
+		} catch (ExecutionException ex) {
+			throw new RuntimeException("Failed to convert the pixels of an image", ex.getCause());
+		}
+	}
+}
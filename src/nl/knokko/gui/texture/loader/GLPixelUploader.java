@@ -0,0 +1,126 @@
+/*******************************************************************************
+ * The MIT License
+ *
+ * Copyright (c) 2018 knokko
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *  
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *******************************************************************************/
+package nl.knokko.gui.texture.loader;
+
+import java.awt.image.BufferedImage;
+import java.nio.ByteBuffer;
+
+import org.lwjgl.opengl.GL15;
+import org.lwjgl.opengl.GL21;
+import org.lwjgl.opengl.GL30;
+import org.lwjgl.opengl.GL32;
+import org.lwjgl.opengl.GLSync;
+
+import nl.knokko.gui.render.GLResourceTracker;
+import nl.knokko.gui.render.GLResourceTracker.Type;
+
+/**
+ * Uploads texture data through a ring of pixel unpack buffers. The pixels are converted straight into a
+ * mapped buffer, so no direct buffer needs to be allocated per texture, and the driver can copy the data to
+ * the texture asynchronously. Every buffer gets a fence after its upload. The buffer is mapped without
+ * synchronization when that fence has been signaled, and with synchronization when waiting for it timed out.
+ */
+class GLPixelUploader {
+	
+	private static final int RING_SIZE = 4;
+	
+	/**
+	 * The maximum time to wait for the fence of a buffer, in nanoseconds
+	 */
+	private static final long FENCE_TIMEOUT = 1000000000L;
+	
+	private final int[] buffers;
+	private final long[] capacities;
+	private final ByteBuffer[] mappedBuffers;
+	private final GLSync[] fences;
+	
+	private int nextIndex;
+	
+	GLPixelUploader(){
+		buffers = new int[RING_SIZE];
+		capacities = new long[RING_SIZE];
+		mappedBuffers = new ByteBuffer[RING_SIZE];
+		fences = new GLSync[RING_SIZE];
+		for (int index = 0; index < RING_SIZE; index++) {
+			buffers[index] = GL15.glGenBuffers();
+			GLResourceTracker.created(Type.BUFFER, buffers[index], 0);
+		}
+	}
+	
+	/**
+	 * Uploads the pixels of source to the texture that is currently bound to GL_TEXTURE_2D.
+	 * @return false if the data couldn't be uploaded because the buffer couldn't be mapped or its contents
+	 * got lost, in which case the caller should upload the data without pixel buffer
+	 */
+	boolean upload(GLPixelFormat format, BufferedImage source){
+		int index = nextIndex;
+		nextIndex = (nextIndex + 1) % RING_SIZE;
+		boolean finished = true;
+		if (fences[index] != null) {
+			int result = GL32.glClientWaitSync(fences[index], GL32.GL_SYNC_FLUSH_COMMANDS_BIT, FENCE_TIMEOUT);
+			finished = result == GL32.GL_ALREADY_SIGNALED || result == GL32.GL_CONDITION_SATISFIED;
+			GL32.glDeleteSync(fences[index]);
+			fences[index] = null;
+		}
+		
+		int size = format.getByteSize();
+		GL15.glBindBuffer(GL21.GL_PIXEL_UNPACK_BUFFER, buffers[index]);
+		if (capacities[index] < size) {
+			GL15.glBufferData(GL21.GL_PIXEL_UNPACK_BUFFER, size, GL15.GL_STREAM_DRAW);
+			capacities[index] = size;
+			GLResourceTracker.setByteSize(Type.BUFFER, buffers[index], size);
+			mappedBuffers[index] = null;
+		}
+		
+		// When the fence was signaled, the previous upload from this buffer is finished, so there is no need to
+		// synchronize. When the wait timed out or failed, the driver must synchronize the mapping instead.
+		int access = GL30.GL_MAP_WRITE_BIT | GL30.GL_MAP_INVALIDATE_RANGE_BIT;
+		if (finished)
+			access |= GL30.GL_MAP_UNSYNCHRONIZED_BIT;
+		ByteBuffer mapped = GL30.glMapBufferRange(GL21.GL_PIXEL_UNPACK_BUFFER, 0, size, access, mappedBuffers[index]);
+		if (mapped == null) {
+			GL15.glBindBuffer(GL21.GL_PIXEL_UNPACK_BUFFER, 0);
+			return false;
+		}
+		mappedBuffers[index] = mapped;
+		mapped.clear();
+		format.write(source, mapped);
+		boolean success = GL15.glUnmapBuffer(GL21.GL_PIXEL_UNPACK_BUFFER);
+		if (success) {
+			format.texImage2D(0);
+			fences[index] = GL32.glFenceSync(GL32.GL_SYNC_GPU_COMMANDS_COMPLETE, 0);
+		}
+		GL15.glBindBuffer(GL21.GL_PIXEL_UNPACK_BUFFER, 0);
+		return success;
+	}
+	
+	void clean(){
+		for (int index = 0; index < RING_SIZE; index++) {
+			if (fences[index] != null)
+				GL32.glDeleteSync(fences[index]);
+			GL15.glDeleteBuffers(buffers[index]);
+			GLResourceTracker.deleted(Type.BUFFER, buffers[index]);
+		}
+	}
+}
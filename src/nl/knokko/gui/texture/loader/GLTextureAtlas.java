@@ -0,0 +1,144 @@
+/*******************************************************************************
+ * The MIT License
+ *
+ * Copyright (c) 2018 knokko
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *  
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *******************************************************************************/
+package nl.knokko.gui.texture.loader;
+
+import java.awt.image.BufferedImage;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.lwjgl.BufferUtils;
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL12;
+
+import nl.knokko.gui.render.GLCommandCapture;
+import nl.knokko.gui.render.GLFrameProfiler;
+import nl.knokko.gui.render.GLResourceTracker;
+import nl.knokko.gui.render.GLResourceTracker.Type;
+import nl.knokko.gui.render.GLStateCache;
+import nl.knokko.gui.texture.GLPartGuiTexture;
+import nl.knokko.gui.texture.GuiTexture;
+
+/**
+ * Packs small images into shared atlas pages. Every image gets a border of 1 pixel that repeats its
+ * edge pixels, so linear filtering won't pick up the colors of its neighbours.
+ * 
+ * Pages are never resized because the textures that were already returned have fixed uv coordinates.
+ * Instead, a new page is added when none of the existing pages has room for an image.
+ */
+class GLTextureAtlas {
+	
+	private static final int BORDER = 1;
+	
+	private final int pageSize;
+	private final List<Page> pages;
+	private final GLTextureRegistry textures;
+	
+	/**
+	 * @param pageSize The width and height of the atlas pages
+	 * @param textures The texture registry of the texture loader, the texture ids of new pages will be added to it
+	 */
+	GLTextureAtlas(int pageSize, GLTextureRegistry textures){
+		this.pageSize = pageSize;
+		this.pages = new ArrayList<Page>();
+		this.textures = textures;
+	}
+	
+	boolean canContain(BufferedImage image){
+		return image.getWidth() + 2 * BORDER <= pageSize && image.getHeight() + 2 * BORDER <= pageSize;
+	}
+	
+	GuiTexture add(BufferedImage source, int minX, int minY, int maxX, int maxY){
+		int width = source.getWidth();
+		int height = source.getHeight();
+		int[] position = null;
+		Page page = null;
+		for (int index = pages.size() - 1; index >= 0 && position == null; index--) {
+			page = pages.get(index);
+			position = page.packer.insert(width + 2 * BORDER, height + 2 * BORDER);
+		}
+		if (position == null) {
+			page = new Page(pageSize);
+			pages.add(page);
+			textures.add(page.textureID, pageSize * (long) pageSize * 4, true);
+			position = page.packer.insert(width + 2 * BORDER, height + 2 * BORDER);
+		}
+		
+		GLStateCache.forceBindTexture(page.textureID);
+		GL11.glTexSubImage2D(GL11.GL_TEXTURE_2D, 0, position[0], position[1], width + 2 * BORDER, height + 2 * BORDER, 
+				GL11.GL_RGBA, GL11.GL_UNSIGNED_BYTE, createBorderedData(source));
+		GLFrameProfiler.count(GLFrameProfiler.Counter.TEXTURE_UPLOADS);
+		GLCommandCapture.textureChanged(page.textureID);
+		
+		int imageX = position[0] + BORDER;
+		int imageY = position[1] + BORDER;
+		float size = pageSize;
+		return new GLPartGuiTexture(page.textureID, (imageX + minX) / size, (imageY + minY) / size, 
+				(imageX + maxX) / size, (imageY + maxY) / size, width, height);
+	}
+	
+	int getPageCount(){
+		return pages.size();
+	}
+	
+	private static ByteBuffer createBorderedData(BufferedImage source){
+		int width = source.getWidth();
+		int height = source.getHeight();
+		int[] pixels = source.getRGB(0, 0, width, height, null, 0, width);
+		int borderedWidth = width + 2 * BORDER;
+		int borderedHeight = height + 2 * BORDER;
+		ByteBuffer buffer = BufferUtils.createByteBuffer(borderedWidth * borderedHeight * 4);
+		for (int y = 0; y < borderedHeight; y++) {
+			int sourceY = Math.min(Math.max(y - BORDER, 0), height - 1);
+			for (int x = 0; x < borderedWidth; x++) {
+				int sourceX = Math.min(Math.max(x - BORDER, 0), width - 1);
+				int argb = pixels[sourceX + sourceY * width];
+				buffer.put((byte) (argb >> 16));
+				buffer.put((byte) (argb >> 8));
+				buffer.put((byte) argb);
+				buffer.put((byte) (argb >> 24));
+			}
+		}
+		buffer.flip();
+		return buffer;
+	}
+	
+	private static class Page {
+		
+		private final int textureID;
+		private final AtlasPacker packer;
+		
+		private Page(int size){
+			packer = new AtlasPacker(size, size);
+			textureID = GL11.glGenTextures();
+			GLResourceTracker.created(Type.TEXTURE, textureID, size * (long) size * 4);
+			GLStateCache.forceBindTexture(textureID);
+			GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_WRAP_S, GL12.GL_CLAMP_TO_EDGE);
+			GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_WRAP_T, GL12.GL_CLAMP_TO_EDGE);
+			GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_MIN_FILTER, GL11.GL_LINEAR);
+			GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_MAG_FILTER, GL11.GL_LINEAR);
+			GL11.glTexImage2D(GL11.GL_TEXTURE_2D, 0, GL11.GL_RGBA8, size, size, 0, GL11.GL_RGBA, GL11.GL_UNSIGNED_BYTE, (ByteBuffer) null);
+		}
+	}
+}
@@ -0,0 +1,206 @@
+/*******************************************************************************
+ * The MIT License
+ *
+ * Copyright (c) 2018 knokko
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *  
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *******************************************************************************/
+package nl.knokko.gui.texture.loader;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import nl.knokko.gui.texture.GuiTexture;
+
+/**
+ * Keeps track of the textures that were loaded by the GLGuiTextureLoader, so that repeated loads of the same
+ * resource path or the same pixel content can share a texture. Every texture has a reference count, and it can
+ * only be deleted when its last user has released it. The methods are synchronized because loadTextureAsync
+ * can be called on other threads than the OpenGL thread, for instance in pipelined mode.
+ */
+class GLTextureCache {
+	
+	private final Map<TextureKey,Entry> entries;
+	private final Map<GuiTexture,Entry> textureEntries;
+	
+	private long hits;
+	private long misses;
+	
+	GLTextureCache(){
+		entries = new HashMap<TextureKey,Entry>();
+		textureEntries = new IdentityHashMap<GuiTexture,Entry>();
+	}
+	
+	/**
+	 * Looks up the texture with the given key and increments its reference count if it is present.
+	 * @return The cached texture, or null if there is no texture with the given key
+	 */
+	synchronized GuiTexture acquire(TextureKey key){
+		Entry entry = entries.get(key);
+		if (entry == null)
+			return null;
+		hits++;
+		entry.referenceCount++;
+		return entry.texture;
+	}
+	
+	/**
+	 * Adds a texture that has just been loaded. Its reference count will be 1.
+	 * @param ownsTexture true if the texture has its own texture id, false if it is a part of an atlas page
+	 */
+	synchronized void add(TextureKey key, GuiTexture texture, boolean ownsTexture){
+		misses++;
+		Entry entry = new Entry(texture, ownsTexture);
+		entry.keys.add(key);
+		entries.put(key, entry);
+		textureEntries.put(texture, entry);
+	}
+	
+	/**
+	 * Lets the given key point to a texture that is already in the cache, without changing its reference count.
+	 */
+	synchronized void addKey(TextureKey key, GuiTexture texture){
+		Entry entry = textureEntries.get(texture);
+		if (entry != null && !entries.containsKey(key)) {
+			entry.keys.add(key);
+			entries.put(key, entry);
+		}
+	}
+	
+	synchronized boolean contains(GuiTexture texture){
+		return textureEntries.containsKey(texture);
+	}
+	
+	/**
+	 * Decrements the reference count of the given texture and removes it from the cache if the reference count
+	 * becomes 0.
+	 * @return true if the texture was removed and has its own texture id, which should be deleted by the caller
+	 */
+	synchronized boolean release(GuiTexture texture){
+		Entry entry = textureEntries.get(texture);
+		if (entry == null)
+			return false;
+		entry.referenceCount--;
+		if (entry.referenceCount > 0)
+			return false;
+		textureEntries.remove(texture);
+		for (TextureKey key : entry.keys)
+			entries.remove(key);
+		return entry.ownsTexture;
+	}
+	
+	synchronized long getHits(){
+		return hits;
+	}
+	
+	synchronized long getMisses(){
+		return misses;
+	}
+	
+	synchronized int size(){
+		return textureEntries.size();
+	}
+	
+	synchronized void clear(){
+		entries.clear();
+		textureEntries.clear();
+	}
+	
+	private static class Entry {
+		
+		private final GuiTexture texture;
+		private final boolean ownsTexture;
+		private final List<TextureKey> keys;
+		
+		private int referenceCount;
+		
+		private Entry(GuiTexture texture, boolean ownsTexture){
+			this.texture = texture;
+			this.ownsTexture = ownsTexture;
+			this.keys = new ArrayList<TextureKey>(2);
+			this.referenceCount = 1;
+		}
+	}
+	
+	/**
+	 * The key of a cached texture: either a resource path or the content of an image, together with the
+	 * region of the image. The region is -1, -1, -1, -1 for loads of the whole image. Different images can
+	 * have the same content hash, so image keys keep a copy of the pixels to compare when the hashes are equal.
+	 */
+	static class TextureKey {
+		
+		static TextureKey forPath(String path, int minX, int minY, int maxX, int maxY){
+			return new TextureKey(path, 0, null, -1, -1, -1, minX, minY, maxX, maxY);
+		}
+		
+		static TextureKey forImage(BufferedImage image, int minX, int minY, int maxX, int maxY){
+			long hash = GLPixelFormat.of(image).contentHash(image);
+			int width = image.getWidth();
+			int height = image.getHeight();
+			int[] pixels = image.getRGB(0, 0, width, height, null, 0, width);
+			return new TextureKey(null, hash, pixels, width, height, image.getTransparency(), minX, minY, maxX, maxY);
+		}
+		
+		private final String path;
+		private final long hash;
+		private final int[] pixels;
+		private final int width, height;
+		private final int transparency;
+		private final int minX, minY, maxX, maxY;
+		
+		private TextureKey(String path, long hash, int[] pixels, int width, int height, int transparency, int minX, int minY, int maxX, int maxY){
+			this.path = path;
+			this.hash = hash;
+			this.pixels = pixels;
+			this.width = width;
+			this.height = height;
+			this.transparency = transparency;
+			this.minX = minX;
+			this.minY = minY;
+			this.maxX = maxX;
+			this.maxY = maxY;
+		}
+		
+		@Override
+		public boolean equals(Object other){
+			if (!(other instanceof TextureKey))
+				return false;
+			TextureKey key = (TextureKey) other;
+			return (path == null ? key.path == null : path.equals(key.path)) && hash == key.hash && width == key.width 
+					&& height == key.height && transparency == key.transparency && minX == key.minX && minY == key.minY 
+					&& maxX == key.maxX && maxY == key.maxY && Arrays.equals(pixels, key.pixels);
+		}
+		
+		@Override
+		public int hashCode(){
+			int result = path == null ? (int) (hash ^ (hash >>> 32)) : path.hashCode();
+			result = 31 * result + width;
+			result = 31 * result + height;
+			result = 31 * result + minX;
+			result = 31 * result + minY;
+			result = 31 * result + maxX;
+			return 31 * result + maxY;
+		}
+	}
+}
@@ -0,0 +1,178 @@
+/*******************************************************************************
+ * The MIT License
+ *
+ * Copyright (c) 2018 knokko
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *  
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *******************************************************************************/
+package nl.knokko.gui.texture.loader;
+
+/**
+ * Keeps track of all texture ids that were created by the GLGuiTextureLoader, together with their estimated
+ * size in bytes. The ids are stored in an open addressing hash table of primitive ints, so registering and
+ * unregistering textures doesn't box anything.
+ */
+class GLTextureRegistry {
+	
+	private static final int EMPTY = 0;
+	
+	private int[] ids;
+	private long[] sizes;
+	private boolean[] atlasPages;
+	
+	private int size;
+	private long totalBytes;
+	
+	GLTextureRegistry(){
+		clear();
+	}
+	
+	/**
+	 * Registers a new texture id. Texture id 0 is never generated by OpenGL, so it can't be registered.
+	 * @param byteSize The estimated amount of video memory used by the texture
+	 * @param atlasPage true if the texture is an atlas page that is shared by multiple gui textures
+	 */
+	void add(int textureID, long byteSize, boolean atlasPage){
+		if (textureID == EMPTY)
+			throw new IllegalArgumentException("Texture id 0 can't be registered");
+		if ((size + 1) * 2 > ids.length)
+			rehash(ids.length * 2);
+		int index = indexOf(textureID);
+		if (ids[index] == EMPTY) {
+			ids[index] = textureID;
+			size++;
+		} else {
+			totalBytes -= sizes[index];
+		}
+		sizes[index] = byteSize;
+		atlasPages[index] = atlasPage;
+		totalBytes += byteSize;
+	}
+	
+	/**
+	 * Unregisters the given texture id.
+	 * @return true if the texture id was registered
+	 */
+	boolean remove(int textureID){
+		if (textureID == EMPTY)
+			return false;
+		int index = indexOf(textureID);
+		if (ids[index] == EMPTY)
+			return false;
+		totalBytes -= sizes[index];
+		size--;
+		
+		// Backward shift deletion, so that lookups don't need tombstones
+		int mask = ids.length - 1;
+		int hole = index;
+		int next = (hole + 1) & mask;
+		while (ids[next] != EMPTY) {
+			int home = hash(ids[next]) & mask;
+			if (((next - home) & mask) >= ((next - hole) & mask)) {
+				ids[hole] = ids[next];
+				sizes[hole] = sizes[next];
+				atlasPages[hole] = atlasPages[next];
+				hole = next;
+			}
+			next = (next + 1) & mask;
+		}
+		ids[hole] = EMPTY;
+		sizes[hole] = 0;
+		atlasPages[hole] = false;
+		return true;
+	}
+	
+	boolean contains(int textureID){
+		return textureID != EMPTY && ids[indexOf(textureID)] == textureID;
+	}
+	
+	boolean isAtlasPage(int textureID){
+		int index = indexOf(textureID);
+		return textureID != EMPTY && ids[index] == textureID && atlasPages[index];
+	}
+	
+	/**
+	 * @return The estimated size of the given texture in bytes, or -1 if it is not registered
+	 */
+	long getByteSize(int textureID){
+		int index = indexOf(textureID);
+		return textureID != EMPTY && ids[index] == textureID ? sizes[index] : -1;
+	}
+	
+	long getTotalBytes(){
+		return totalBytes;
+	}
+	
+	int size(){
+		return size;
+	}
+	
+	/**
+	 * @return A new array containing all registered texture ids
+	 */
+	int[] toArray(){
+		int[] result = new int[size];
+		int resultIndex = 0;
+		for (int id : ids)
+			if (id != EMPTY)
+				result[resultIndex++] = id;
+		return result;
+	}
+	
+	void clear(){
+		ids = new int[64];
+		sizes = new long[64];
+		atlasPages = new boolean[64];
+		size = 0;
+		totalBytes = 0;
+	}
+	
+	private static int hash(int textureID){
+		int hash = textureID * 0x9E3779B9;
+		return hash ^ (hash >>> 16);
+	}
+	
+	/**
+	 * @return The index of the given texture id, or the index of the empty slot where it should be inserted
+	 */
+	private int indexOf(int textureID){
+		int mask = ids.length - 1;
+		int index = hash(textureID) & mask;
+		while (ids[index] != EMPTY && ids[index] != textureID)
+			index = (index + 1) & mask;
+		return index;
+	}
+	
+	private void rehash(int capacity){
+		int[] oldIds = ids;
+		long[] oldSizes = sizes;
+		boolean[] oldAtlasPages = atlasPages;
+		ids = new int[capacity];
+		sizes = new long[capacity];
+		atlasPages = new boolean[capacity];
+		for (int index = 0; index < oldIds.length; index++) {
+			if (oldIds[index] != EMPTY) {
+				int newIndex = indexOf(oldIds[index]);
+				ids[newIndex] = oldIds[index];
+				sizes[newIndex] = oldSizes[index];
+				atlasPages[newIndex] = oldAtlasPages[index];
+			}
+		}
+	}
+}
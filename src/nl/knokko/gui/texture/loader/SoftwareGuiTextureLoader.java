@@ -0,0 +1,142 @@
+/*******************************************************************************
+ * The MIT License
+ *
+ * Copyright (c) 2018 knokko
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *  
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *******************************************************************************/
+package nl.knokko.gui.texture.loader;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.imageio.ImageIO;
+
+import nl.knokko.gui.texture.GLGuiTexture;
+import nl.knokko.gui.texture.GLPartGuiTexture;
+import nl.knokko.gui.texture.GuiTexture;
+
+/**
+ * A texture loader that keeps the pixels of the loaded images in memory instead of uploading them to OpenGL,
+ * so it can be used without OpenGL context. It returns the same kind of textures with the same uv coordinates
+ * as the GLGuiTextureLoader, but their texture ids refer to the images of this loader. The SoftwareGuiRenderer
+ * uses it to look up the pixels of the textures it renders.
+ */
+public class SoftwareGuiTextureLoader implements GuiTextureLoader {
+	
+	// The image with texture id i is at index i - 1, because texture id 0 means that there is no texture
+	private final List<int[]> images;
+	private final List<int[]> sizes;
+	
+	private PrintStream errorOutput;
+	
+	public SoftwareGuiTextureLoader() {
+		images = new ArrayList<int[]>();
+		sizes = new ArrayList<int[]>();
+		errorOutput = System.out;
+	}
+	
+	/**
+	 * @return The ARGB pixels of the image with the given texture id, row by row starting at the top, or null
+	 * if there is no such image
+	 */
+	public synchronized int[] getPixels(int textureID) {
+		if (textureID <= 0 || textureID > images.size())
+			return null;
+		return images.get(textureID - 1);
+	}
+	
+	public synchronized int getWidth(int textureID) {
+		return sizes.get(textureID - 1)[0];
+	}
+	
+	public synchronized int getHeight(int textureID) {
+		return sizes.get(textureID - 1)[1];
+	}
+	
+	private synchronized int addImage(BufferedImage source) {
+		int width = source.getWidth();
+		int height = source.getHeight();
+		images.add(source.getRGB(0, 0, width, height, null, 0, width));
+		sizes.add(new int[] {width, height});
+		return images.size();
+	}
+	
+	/**
+	 * Forgets the pixels of the given texture. The texture shouldn't be rendered anymore after this call.
+	 */
+	public synchronized void release(GuiTexture texture) {
+		int textureID = texture.getTextureID();
+		if (textureID > 0 && textureID <= images.size())
+			images.set(textureID - 1, null);
+	}
+
+	@Override
+	public GuiTexture loadTexture(BufferedImage source, int minX, int minY, int maxX, int maxY) {
+		int width = source.getWidth();
+		int height = source.getHeight();
+		return new GLPartGuiTexture(addImage(source), (float) minX / width, (float) minY / height, (float) maxX / width, (float) maxY / height, width, height);
+	}
+
+	@Override
+	public GuiTexture loadTexture(BufferedImage source) {
+		return new GLGuiTexture(addImage(source), source.getWidth(), source.getHeight());
+	}
+
+	@Override
+	public GuiTexture loadTexture(String texturePath, int minX, int minY, int maxX, int maxY) {
+		BufferedImage image = readImage(texturePath);
+		return image == null ? null : loadTexture(image, minX, minY, maxX, maxY);
+	}
+
+	@Override
+	public GuiTexture loadTexture(String texturePath) {
+		BufferedImage image = readImage(texturePath);
+		return image == null ? null : loadTexture(image);
+	}
+	
+	private BufferedImage readImage(String texturePath) {
+		try {
+			URL resource = SoftwareGuiTextureLoader.class.getClassLoader().getResource(texturePath);
+			if (resource == null) {
+				throw new IOException("Can't find texture " + texturePath);
+			}
+			return ImageIO.read(resource);
+		} catch (IOException e) {
+			errorOutput.println("Can't load texture '" + texturePath + "': " + e.getMessage());
+			e.printStackTrace(errorOutput);
+			return null;
+		}
+	}
+
+	@Override
+	public GuiTextureLoader setErrorOutput(PrintStream output) {
+		errorOutput = output;
+		return this;
+	}
+	
+	public synchronized void clean() {
+		images.clear();
+		sizes.clear();
+	}
+}
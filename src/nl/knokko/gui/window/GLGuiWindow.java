@@ -23,21 +23,7 @@
  *******************************************************************************/
 package nl.knokko.gui.window;
 
-import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
-import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
-import java.net.JarURLConnection;
-import java.net.URL;
-import java.net.URLConnection;
-import java.util.Enumeration;
-import java.util.jar.JarEntry;
-import java.util.jar.JarFile;
-
 import org.lwjgl.LWJGLException;
-import org.lwjgl.LWJGLUtil;
 import org.lwjgl.input.Keyboard;
 import org.lwjgl.input.Mouse;
 import org.lwjgl.opengl.ContextAttribs;
@@ -49,96 +35,16 @@ import org.lwjgl.opengl.PixelFormat;
 import nl.knokko.gui.component.GuiComponent;
 import nl.knokko.gui.component.state.GLComponentState;
 import nl.knokko.gui.component.state.GuiComponentState;
-import nl.knokko.gui.keycode.GLKeyConverter;
-import nl.knokko.gui.keycode.KeyCode;
-import nl.knokko.gui.mousecode.GLMouseConverter;
+import nl.knokko.gui.render.GLCommandBuffer;
+import nl.knokko.gui.render.GLFrameProfiler;
+import nl.knokko.gui.render.GLFrameProfiler.Phase;
 import nl.knokko.gui.render.GLGuiRenderer;
 import nl.knokko.gui.texture.loader.GLGuiTextureLoader;
 import nl.knokko.gui.texture.loader.GuiTextureLoader;
 import nl.knokko.gui.util.CharBuilder;
-import nl.knokko.gui.window.input.CharacterFilter;
 
 public class GLGuiWindow extends GuiWindow {
 	
-	private static void prepare(){
-		File gameFolder = new File(System.getProperty("user.home") + File.separator + ".LWJGL");
-		File destFolder = new File(gameFolder.getPath() + File.separator + "natives");
-		if(!destFolder.exists()){
-			System.out.println("natives folder does not exist; creating a new one");
-			destFolder.mkdirs();
-			try {
-				URL url = GLGuiWindow.class.getClassLoader().getResource("natives");
-				URLConnection uc = url.openConnection();
-				if(uc instanceof JarURLConnection){//not in development (this requires the natives to be in any source folder)
-					JarURLConnection jc = (JarURLConnection) uc;
-					JarFile jar = jc.getJarFile();
-					Enumeration<JarEntry> entries = jar.entries();
-					while(entries.hasMoreElements()){
-						JarEntry entry = entries.nextElement();
-						String name = entry.getName();
-						if(name.startsWith("natives")){
-							File f = new File(gameFolder + File.separator + entry.getName());
-							if(entry.isDirectory()){
-								f.mkdirs();
-							}
-							else {
-								copy(jar.getInputStream(entry), new FileOutputStream(f));
-							}
-						}
-					}
-				}
-				else {//in development (this requires the natives to be in the src source folder, edit the third line in this block to the correct source folder)
-					System.out.println("Not a jar connection (" + uc + ")");
-					File codeSource = new File(GLGuiWindow.class.getProtectionDomain().getCodeSource().getLocation().getFile());
-					File natives = new File(codeSource.getParentFile() + File.separator + "src" + File.separator + "natives");
-					copyFile(natives, gameFolder);
-					
-				}
-			} catch (IOException e) {
-				e.printStackTrace();
-			}
-		}
-		else {
-			System.out.println("natives folder already exists");
-		}
-		String platformName = LWJGLUtil.getPlatformName();
-		if(platformName.equals(LWJGLUtil.PLATFORM_LINUX_NAME)){
-			String osName = System.getProperty("os.name");
-			if(osName.startsWith("FreeBSD"))
-				platformName = "freebsd";//I can't test this code, so I am not sure this works
-			else if(osName.startsWith("SunOS"))
-				platformName = "solaris";
-		}
-		System.setProperty("org.lwjgl.librarypath", destFolder.getAbsolutePath() + "/" + platformName);
-	}
-	
-	private static void copyFile(File source, File dest) throws IOException {
-		File[] children = source.listFiles();
-		if(children == null){//source is a file
-			File newFile = new File(dest + File.separator + source.getName());
-			System.out.println(source.getAbsolutePath());
-			copy(new FileInputStream(source), new FileOutputStream(newFile));
-		}
-		else {//source is a directory
-			File newFolder = new File(dest + File.separator + source.getName());
-			newFolder.mkdirs();
-			for(File child : children){
-				copyFile(child, newFolder);
-			}
-		}
-	}
-	
-	private static void copy(InputStream input, OutputStream output) throws IOException {
-		byte[] buffer = new byte[100000];
-		int readBytes = input.read(buffer);
-		while(readBytes != -1){
-			output.write(buffer, 0, readBytes);
-			readBytes = input.read(buffer);
-		}
-		input.close();
-		output.close();
-	}
-	
 	private final GLGuiTextureLoader textureLoader;
 	private final GLGuiRenderer guiRenderer;
 	private final CharBuilder charBuilder;
@@ -146,12 +52,39 @@ public class GLGuiWindow extends GuiWindow {
 	private int mouseDX;
 	private int mouseDY;
 	
+	// The mouse and display state of the last dispatched input, so the getters don't need to ask lwjgl
+	private int mouseX;
+	private int mouseY;
+	private boolean mouseInside;
+	private int displayWidth = 1;
+	private int displayHeight = 1;
+	
+	private long coalescedEvents;
+	private final GLInputBuffer inputEvents;
+	private final GLInputDispatcher dispatcher;
+	
 	private boolean wasInWindow;
 	
+	private boolean idleMode;
+	private int maxIdleSleep;
+	private volatile boolean changed;
+	private volatile boolean idleSleeping;
+	private final Object idleLock;
+	
+	private boolean pipelined;
+	private Pipeline pipeline;
+	private volatile boolean recordRequested;
+	
 	public GLGuiWindow(){
+		GLNativeExtractor.start();
 		textureLoader = new GLGuiTextureLoader();
 		guiRenderer = new GLGuiRenderer(textureLoader);
 		charBuilder = new CharBuilder(textureLoader);
+		maxIdleSleep = 100;
+		changed = true;
+		idleLock = new Object();
+		inputEvents = new GLInputBuffer();
+		dispatcher = new GLInputDispatcher();
 		setRenderContinuously(true);
 	}
 	
@@ -164,7 +97,7 @@ public class GLGuiWindow extends GuiWindow {
 	@Override
 	protected void directOpen(String title, int width, int height, boolean border) {
 		try {
-			prepare();
+			GLNativeExtractor.await();
 			ContextAttribs attribs = new ContextAttribs(3, 2).withForwardCompatible(true).withProfileCore(true);
 			Display.setDisplayMode(new DisplayMode(width, height));
 			Display.setResizable(true);
@@ -181,7 +114,7 @@ public class GLGuiWindow extends GuiWindow {
 	@Override
 	protected void directOpen(String title, boolean border) {
 		try {
-			prepare();
+			GLNativeExtractor.await();
 			ContextAttribs attribs = new ContextAttribs(3, 2).withForwardCompatible(true).withProfileCore(true);
 			if (border) {
 				Display.setDisplayMode(Display.getDesktopDisplayMode());
@@ -199,81 +132,209 @@ public class GLGuiWindow extends GuiWindow {
 		}
 	}
 
+	/**
+	 * Enables or disables idle mode. In idle mode, the run loop doesn't render and swap buffers when nothing
+	 * changed: no input arrived, the display isn't dirty and markChange wasn't called. While the window stays
+	 * idle, the loop polls less often, up to maxIdleSleep milliseconds between polls. It goes back to the full
+	 * frame rate as soon as something changes. Components that animate must call markChange in this mode.
+	 */
+	public void setIdleMode(boolean idleMode) {
+		this.idleMode = idleMode;
+		onChange();
+	}
+	
+	public boolean isIdleMode() {
+		return idleMode;
+	}
+	
+	/**
+	 * Sets the maximum time the run loop waits between polls in idle mode, the default is 100 milliseconds.
+	 */
+	public void setMaxIdleSleep(int milliseconds) {
+		maxIdleSleep = milliseconds;
+	}
+	
+	/**
+	 * Enables or disables pipelined mode, this must be done before the window starts running. In pipelined
+	 * mode, the input is still polled and the frames are still rendered on the OpenGL thread, but dispatching
+	 * input, updating the components and recording their render commands happens on a worker thread. The
+	 * worker records into a GLCommandBuffer while the OpenGL thread renders the last completed buffer, so
+	 * slow component logic doesn't delay the frames.
+	 * 
+	 * Components must not use OpenGL in pipelined mode: they can't load textures synchronously or use
+	 * GLRenderLayers (getLayer and composite throw an IllegalStateException on the worker thread), but loadTextureAsync of the GLGuiTextureLoader can be used because it only touches the
+	 * synchronized texture cache and queues the upload for the OpenGL thread. Partial redraw is not supported in pipelined mode.
+	 */
+	public void setPipelined(boolean pipelined) {
+		if (pipeline != null)
+			throw new IllegalStateException("Can't change the pipelined mode while the window is running");
+		this.pipelined = pipelined;
+	}
+	
+	public boolean isPipelined() {
+		return pipelined;
+	}
+	
+	@Override
+	public void markChange() {
+		super.markChange();
+		
+		// The super constructor may call this before the renderer is created
+		if (guiRenderer != null) {
+			// Pipelined mode doesn't support partial redraw, and the worker must not touch the damage tracker
+			if (!pipelined)
+				guiRenderer.getDamage().addAll();
+			onChange();
+		}
+	}
+	
+	/**
+	 * Marks only the given part of the window as changed. When partial redraw is enabled in the renderer,
+	 * only the changed parts of the window will be rendered again. The coordinates are relative to the window.
+	 * Mouse movement doesn't damage anything by itself, so components that change when the mouse hovers over
+	 * them should call this for their own area.
+	 */
+	public void markChange(float minX, float minY, float maxX, float maxY) {
+		super.markChange();
+		if (!pipelined)
+			guiRenderer.getDamage().add(minX, minY, maxX, maxY);
+		onChange();
+	}
+	
+	private void onChange() {
+		recordRequested = true;
+		wakeUp();
+	}
+	
+	/**
+	 * Lets the run loop render the next frame, even in idle mode.
+	 */
+	private void wakeUp() {
+		changed = true;
+		if (idleSleeping) {
+			// Changes from other threads should end the idle sleep immediately
+			synchronized (idleLock) {
+				idleLock.notifyAll();
+			}
+		}
+	}
+	
+	private void sleepIdle(int milliseconds) {
+		synchronized (idleLock) {
+			idleSleeping = true;
+			try {
+				if (!changed)
+					idleLock.wait(milliseconds);
+			} catch (InterruptedException e) {
+				// Just poll again
+			}
+			idleSleeping = false;
+		}
+	}
+
+	@Override
+	public void update() {
+		pollInput(inputEvents);
+		update(inputEvents);
+	}
+	
+	/**
+	 * Does what GuiWindow.update does, but with input that has already been polled: the listener can veto the
+	 * update, otherwise the input is dispatched, the main component is updated and the listener is notified.
+	 * The buffer is only cleared when its events were dispatched, so vetoed input is dispatched by the next
+	 * update. The serial run loop and the worker of pipelined mode both update through this method.
+	 */
+	private void update(GLInputBuffer events) {
+		if (listener == null || !listener.preUpdate()) {
+			dispatchInput(events);
+			events.clear();
+			if (mainComponent != null)
+				mainComponent.update();
+			postUpdate();
+			if (listener != null)
+				listener.postUpdate();
+		}
+	}
+
 	@Override
 	protected void preUpdate() {
-		if (Display.isDirty()) {
+		pollInput(inputEvents);
+		dispatchInput(inputEvents);
+		inputEvents.clear();
+	}
+	
+	/**
+	 * Moves the pending lwjgl input events to the given buffer. This must happen on the OpenGL thread.
+	 */
+	private void pollInput(GLInputBuffer events) {
+		if (Display.isDirty() || Display.wasResized()) {
 			markChange();
 		}
 		if (wasInWindow != Mouse.isInsideWindow()) {
 			markChange();
 		}
-		mouseDX = 0;
-		mouseDY = 0;
+		
+		int width = Display.getWidth();
+		int height = Display.getHeight();
+		events.setState(Mouse.getX(), Mouse.getY(), Mouse.isInsideWindow(), width, height);
+		
+		// Consecutive scroll events are merged into a single scroll, and movement is only accumulated
+		boolean moved = false;
 		while(Mouse.next()){
-			float scroll = Mouse.getEventDWheel() * 0.00025f;
-			//it appears that gl scrolling is 40 times more sensitive than awt scrolling
-			//I don't really like using magic numbers, but I don't have an alternative
-			if(scroll != 0){
-				if(listener != null)
-					scroll = listener.preScroll(scroll);
-				if(scroll != 0){
-					mainComponent.scroll(scroll);
-					listener.postScroll(scroll);
-				}
-			}
-			if(Mouse.getEventButton() != -1){
-				int button = GLMouseConverter.get(Mouse.getEventButton());
-				if(Mouse.getEventButtonState())
-					input.setMouseDown(button);
-				else {// on release
-					float x = (float) Mouse.getEventX() / Display.getWidth();
-					float y = (float) Mouse.getEventY() / Display.getHeight();
-					if(listener == null || !listener.preClick(x, y, button)){
-						mainComponent.click(x, y, button);
-						if(listener != null)
-							listener.postClick(x, y, button);
-					}
-					input.setMouseUp(button);
-				}
+			changed = true;
+			int dWheel = Mouse.getEventDWheel();
+			int glButton = Mouse.getEventButton();
+			if(dWheel != 0 && events.addScroll(dWheel))
+				coalesceEvent();
+			if(glButton != -1){
+				float x = (float) Mouse.getEventX() / width;
+				float y = (float) Mouse.getEventY() / height;
+				events.addButton(glButton, Mouse.getEventButtonState(), x, y);
+			} else if(dWheel == 0){
+				if(moved)
+					coalesceEvent();
+				moved = true;
 			}
-			mouseDX += Mouse.getEventDX();
-			mouseDY += Mouse.getEventDY();
+			events.addMotion(Mouse.getEventDX(), Mouse.getEventDY());
 		}
-		if (mouseDX != 0 || mouseDY != 0) {
-			markChange();
+		if (events.getMouseDX() != 0 || events.getMouseDY() != 0) {
+			// Don't damage the whole window: components that change on hover mark their own area
+			super.markChange();
+			onChange();
 		}
 		while(Keyboard.next()){
-			//KeyEvent (awt) and Keyboard (lwjgl) use different key codes...
-			int[] codes = GLKeyConverter.getDirect(Keyboard.getEventKey());
-			char c = Keyboard.getEventCharacter();
-			if(Keyboard.getEventKeyState() && c != Keyboard.CHAR_NONE && CharacterFilter.approve(c) && (listener == null || !listener.preKeyPressed(c))){
-				mainComponent.keyPressed(c);
-				if(listener != null)
-					listener.postKeyPressed(c);
-			}
-			if(codes != null && codes[0] != KeyCode.UNDEFINED){
-				for(int code : codes){
-					if(Keyboard.getEventKeyState()){
-						input.setKeyDown(code);
-						if(listener == null || !listener.preKeyPressed(code)){
-							mainComponent.keyPressed(code);
-							if(listener != null)
-								listener.postKeyPressed(code);
-						}
-					}
-					else {
-						if(listener == null || !listener.preKeyReleased(code)){
-							mainComponent.keyReleased(code);
-							if(listener != null)
-								listener.postKeyReleased(code);
-						}
-						input.setKeyUp(code);
-					}
-				}
-			}
-			//when state is false (keyRelease), the character is unknown
+			changed = true;
+			events.addKey(Keyboard.getEventKey(), Keyboard.getEventCharacter(), Keyboard.getEventKeyState());
 		}
-		wasInWindow = Mouse.isInsideWindow();
+		wasInWindow = events.isMouseInside();
+	}
+	
+	/**
+	 * Passes the events in the given buffer to the listener and main component, in the order they occurred.
+	 */
+	void dispatchInput(GLInputBuffer events) {
+		mouseDX = events.getMouseDX();
+		mouseDY = events.getMouseDY();
+		mouseX = events.getMouseX();
+		mouseY = events.getMouseY();
+		mouseInside = events.isMouseInside();
+		displayWidth = events.getDisplayWidth();
+		displayHeight = events.getDisplayHeight();
+		dispatcher.setTargets(mainComponent, listener, input);
+		dispatcher.dispatch(events);
+	}
+	
+	private void coalesceEvent() {
+		coalescedEvents++;
+		GLFrameProfiler.count(GLFrameProfiler.Counter.COALESCED_INPUT_EVENTS);
+	}
+	
+	/**
+	 * @return The number of mouse events that were merged into other mouse events since this window was created.
+	 * Consecutive scroll events are merged into one scroll and mouse movements are merged into one movement.
+	 */
+	public long getCoalescedEventCount() {
+		return coalescedEvents;
 	}
 	
 	@Override
@@ -281,8 +342,22 @@ public class GLGuiWindow extends GuiWindow {
 
 	@Override
 	protected void directRender() {
-		mainComponent.render(guiRenderer);
-		guiRenderer.maybeRenderNow();
+		if (pipeline != null) {
+			pipeline.render();
+		} else if (guiRenderer.isPartialRedraw()) {
+			if (guiRenderer.getDamage().isDirty()) {
+				long startTime = GLFrameProfiler.begin();
+				mainComponent.render(guiRenderer);
+				GLFrameProfiler.end(Phase.RECORD, startTime);
+				guiRenderer.maybeRenderNow();
+			}
+			guiRenderer.presentFrame();
+		} else {
+			long startTime = GLFrameProfiler.begin();
+			mainComponent.render(guiRenderer);
+			GLFrameProfiler.end(Phase.RECORD, startTime);
+			guiRenderer.maybeRenderNow();
+		}
 	}
 
 	@Override
@@ -294,17 +369,64 @@ public class GLGuiWindow extends GuiWindow {
 
 	@Override
 	public void run(int fps) {
+		if (pipelined) {
+			if (guiRenderer.isPartialRedraw())
+				throw new IllegalStateException("Partial redraw is not supported in pipelined mode");
+			pipeline = new Pipeline();
+			pipeline.start();
+		}
+		try {
+			runLoop(fps);
+		} finally {
+			if (pipeline != null) {
+				pipeline.stop();
+				pipeline = null;
+			}
+		}
+		close();
+	}
+	
+	private void runLoop(int fps) {
+		int idleSleep = 0;
 		while(!Display.isCloseRequested() && !shouldStopRunning){
 			if(listener == null || !listener.preRunLoop()){
-				update();
-				render();
-				Display.update();
-				Display.sync(fps);
+				long uploadsStart = GLFrameProfiler.begin();
+				if (textureLoader.processUploads() > 0) {
+					// The new textures should become visible
+					markChange();
+				}
+				long updateStart = GLFrameProfiler.begin();
+				if (pipeline != null)
+					pipeline.tick();
+				else
+					update();
+				long updateEnd = GLFrameProfiler.begin();
+				if (!idleMode || changed) {
+					changed = false;
+					
+					// Only iterations that render count as a frame
+					GLFrameProfiler.end(Phase.UPLOADS, uploadsStart, updateStart);
+					GLFrameProfiler.end(Phase.UPDATE, updateStart, updateEnd);
+					render();
+					long startTime = GLFrameProfiler.begin();
+					Display.update();
+					GLFrameProfiler.end(Phase.SWAP, startTime);
+					startTime = GLFrameProfiler.begin();
+					Display.sync(fps);
+					GLFrameProfiler.end(Phase.SYNC, startTime);
+					GLFrameProfiler.endFrame();
+					idleSleep = 0;
+				} else {
+					// The previous frame is still on the screen, so there is no need to render or swap buffers
+					idleSleep = idleSleep == 0 ? Math.max(1, 1000 / Math.max(fps, 1)) : Math.min(2 * idleSleep, maxIdleSleep);
+					sleepIdle(idleSleep);
+					Display.processMessages();
+					GLFrameProfiler.skipFrame();
+				}
 				if(listener != null)
 					listener.postRunLoop();
 			}
 		}
-		close();
 	}
 
 	@Override
@@ -329,26 +451,26 @@ public class GLGuiWindow extends GuiWindow {
 
 	@Override
 	public float getMouseX() {
-		if (Mouse.isInsideWindow())
-			return (float) Mouse.getX() / Display.getWidth();
+		if (mouseInside)
+			return (float) mouseX / displayWidth;
 		return Float.NaN;
 	}
 
 	@Override
 	public float getMouseY() {
-		if (Mouse.isInsideWindow())
-			return (float) Mouse.getY() / Display.getHeight();
+		if (mouseInside)
+			return (float) mouseY / displayHeight;
 		return Float.NaN;
 	}
 	
 	@Override
 	public float getMouseDX() {
-		return (float) mouseDX / Display.getWidth();
+		return (float) mouseDX / displayWidth;
 	}
 	
 	@Override
 	public float getMouseDY() {
-		return (float) mouseDY / Display.getHeight();
+		return (float) mouseDY / displayHeight;
 	}
 
 	@Override
@@ -426,4 +548,149 @@ public class GLGuiWindow extends GuiWindow {
 			return -1;
 		}
 	}
+	
+	/**
+	 * Runs the worker thread of pipelined mode and hands the input and command buffers over between the
+	 * worker thread and the OpenGL thread. The OpenGL thread never waits for the worker, but the worker waits
+	 * until the OpenGL thread has finished rendering the buffer it wants to record into next.
+	 */
+	private class Pipeline implements Runnable {
+		
+		private final Object lock;
+		
+		private GLInputBuffer pendingInput;
+		private GLInputBuffer workerInput;
+		
+		private GLCommandBuffer front;
+		private GLCommandBuffer back;
+		
+		// The profiler samples of the worker, and those that were handed over with the last completed buffer
+		private final GLFrameProfiler.WorkerSamples workerSamples;
+		private final GLFrameProfiler.WorkerSamples completedSamples;
+		private boolean hasFront;
+		private boolean rendering;
+		
+		private boolean tickRequested;
+		private boolean running;
+		private Throwable failure;
+		
+		private Thread thread;
+		
+		private Pipeline() {
+			lock = new Object();
+			pendingInput = new GLInputBuffer();
+			workerInput = new GLInputBuffer();
+			front = new GLCommandBuffer();
+			back = new GLCommandBuffer();
+			workerSamples = new GLFrameProfiler.WorkerSamples();
+			completedSamples = new GLFrameProfiler.WorkerSamples();
+		}
+		
+		private void start() {
+			running = true;
+			thread = new Thread(this, "GLGuiWindow pipeline");
+			thread.setDaemon(true);
+			thread.start();
+		}
+		
+		private void stop() {
+			synchronized (lock) {
+				running = false;
+				lock.notifyAll();
+			}
+			boolean interrupted = false;
+			while (thread.isAlive()) {
+				try {
+					thread.join();
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+			if (interrupted)
+				Thread.currentThread().interrupt();
+		}
+		
+		/**
+		 * Polls the input and lets the worker start its next update. This is called on the OpenGL thread.
+		 */
+		private void tick() {
+			synchronized (lock) {
+				if (failure != null)
+					throw new RuntimeException("The pipeline worker failed", failure);
+				pollInput(pendingInput);
+				tickRequested = true;
+				lock.notifyAll();
+			}
+		}
+		
+		/**
+		 * Renders the last completed command buffer. This is called on the OpenGL thread.
+		 */
+		private void render() {
+			GLCommandBuffer buffer;
+			synchronized (lock) {
+				GLFrameProfiler.addWorkerSamples(completedSamples);
+				if (!hasFront)
+					return;
+				buffer = front;
+				rendering = true;
+			}
+			try {
+				guiRenderer.render(buffer);
+			} finally {
+				synchronized (lock) {
+					rendering = false;
+					lock.notifyAll();
+				}
+			}
+		}
+
+		@Override
+		public void run() {
+			GLFrameProfiler.setWorkerSamples(workerSamples);
+			try {
+				while (true) {
+					synchronized (lock) {
+						while (running && !tickRequested)
+							lock.wait();
+						if (!running)
+							return;
+						tickRequested = false;
+						GLInputBuffer polled = pendingInput;
+						pendingInput = workerInput;
+						workerInput = polled;
+					}
+					boolean hadInput = workerInput.size() > 0;
+					update(workerInput);
+					
+					// In idle mode, only record when something changed
+					if (!idleMode || hadInput || recordRequested) {
+						recordRequested = false;
+						back.reset();
+						long startTime = GLFrameProfiler.begin();
+						if (mainComponent != null)
+							mainComponent.render(back);
+						back.maybeRenderNow();
+						GLFrameProfiler.end(Phase.RECORD, startTime);
+						synchronized (lock) {
+							while (rendering)
+								lock.wait();
+							GLCommandBuffer completed = back;
+							back = front;
+							front = completed;
+							hasFront = true;
+							completedSamples.add(workerSamples);
+						}
+						wakeUp();
+					}
+				}
+			} catch (InterruptedException e) {
+				// The window is closing
+			} catch (Throwable t) {
+				synchronized (lock) {
+					failure = t;
+				}
+			}
+		}
+	}
 }
\ No newline at end of file
@@ -0,0 +1,192 @@
+/*******************************************************************************
+ * The MIT License
+ *
+ * Copyright (c) 2018 knokko
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *  
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *******************************************************************************/
+package nl.knokko.gui.window;
+
+/**
+ * Stores polled input events until they are dispatched to the components. The events are stored in
+ * primitive arrays that are reused after clear(), so polling and dispatching don't allocate anything once
+ * the arrays are big enough. Scroll events that directly follow another scroll event are merged into it.
+ * The buffer also stores the mouse position and display size at the time of polling.
+ */
+class GLInputBuffer {
+	
+	static final int SCROLL = 0;
+	static final int BUTTON = 1;
+	static final int KEY = 2;
+	
+	/**
+	 * Enough for the events of a couple of frames of a 1000 Hz mouse, so the arrays don't need to grow
+	 */
+	private static final int INITIAL_CAPACITY = 256;
+	
+	private int[] types;
+	
+	// Every event has 3 int arguments and 2 float arguments
+	private int[] ints;
+	private float[] floats;
+	
+	private int size;
+	
+	private int mouseDX;
+	private int mouseDY;
+	
+	private int mouseX;
+	private int mouseY;
+	private boolean mouseInside;
+	private int displayWidth = 1;
+	private int displayHeight = 1;
+	
+	GLInputBuffer() {
+		types = new int[INITIAL_CAPACITY];
+		ints = new int[3 * types.length];
+		floats = new float[2 * types.length];
+	}
+	
+	/**
+	 * Adds a scroll event, or adds the given wheel delta to the last event if that was a scroll event too.
+	 * @return true if the scroll was merged into the previous event
+	 */
+	boolean addScroll(int dWheel) {
+		if (size > 0 && types[size - 1] == SCROLL) {
+			ints[3 * (size - 1)] += dWheel;
+			return true;
+		}
+		add(SCROLL, dWheel, 0, 0, 0, 0);
+		return false;
+	}
+	
+	void addButton(int glButton, boolean buttonState, float x, float y) {
+		add(BUTTON, glButton, buttonState ? 1 : 0, 0, x, y);
+	}
+	
+	void addKey(int glKey, char character, boolean keyState) {
+		add(KEY, glKey, character, keyState ? 1 : 0, 0, 0);
+	}
+	
+	void setState(int mouseX, int mouseY, boolean mouseInside, int displayWidth, int displayHeight) {
+		this.mouseX = mouseX;
+		this.mouseY = mouseY;
+		this.mouseInside = mouseInside;
+		this.displayWidth = displayWidth;
+		this.displayHeight = displayHeight;
+	}
+	
+	void addMotion(int dx, int dy) {
+		mouseDX += dx;
+		mouseDY += dy;
+	}
+	
+	private void add(int type, int a, int b, int c, float x, float y) {
+		if (size == types.length) {
+			int[] newTypes = new int[2 * size];
+			int[] newInts = new int[3 * newTypes.length];
+			float[] newFloats = new float[2 * newTypes.length];
+			System.arraycopy(types, 0, newTypes, 0, size);
+			System.arraycopy(ints, 0, newInts, 0, 3 * size);
+			System.arraycopy(floats, 0, newFloats, 0, 2 * size);
+			types = newTypes;
+			ints = newInts;
+			floats = newFloats;
+		}
+		types[size] = type;
+		ints[3 * size] = a;
+		ints[3 * size + 1] = b;
+		ints[3 * size + 2] = c;
+		floats[2 * size] = x;
+		floats[2 * size + 1] = y;
+		size++;
+	}
+	
+	void clear() {
+		size = 0;
+		mouseDX = 0;
+		mouseDY = 0;
+	}
+	
+	int size() {
+		return size;
+	}
+	
+	int getType(int index) {
+		return types[index];
+	}
+	
+	/**
+	 * @return The wheel delta of a scroll event, the lwjgl button of a button event or the lwjgl key of a
+	 * key event
+	 */
+	int getCode(int index) {
+		return ints[3 * index];
+	}
+	
+	/**
+	 * @return The button state of a button event or the character of a key event
+	 */
+	int getSecond(int index) {
+		return ints[3 * index + 1];
+	}
+	
+	/**
+	 * @return The key state of a key event
+	 */
+	int getThird(int index) {
+		return ints[3 * index + 2];
+	}
+	
+	float getX(int index) {
+		return floats[2 * index];
+	}
+	
+	float getY(int index) {
+		return floats[2 * index + 1];
+	}
+	
+	int getMouseDX() {
+		return mouseDX;
+	}
+	
+	int getMouseDY() {
+		return mouseDY;
+	}
+	
+	int getMouseX() {
+		return mouseX;
+	}
+	
+	int getMouseY() {
+		return mouseY;
+	}
+	
+	boolean isMouseInside() {
+		return mouseInside;
+	}
+	
+	int getDisplayWidth() {
+		return displayWidth;
+	}
+	
+	int getDisplayHeight() {
+		return displayHeight;
+	}
+}
\ No newline at end of file
@@ -0,0 +1,142 @@
+/*******************************************************************************
+ * The MIT License
+ *
+ * Copyright (c) 2018 knokko
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *  
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *******************************************************************************/
+package nl.knokko.gui.window;
+
+import org.lwjgl.input.Keyboard;
+
+import nl.knokko.gui.component.GuiComponent;
+import nl.knokko.gui.keycode.GLKeyConverter;
+import nl.knokko.gui.mousecode.GLMouseConverter;
+import nl.knokko.gui.window.input.CharacterFilter;
+import nl.knokko.gui.window.input.WindowInput;
+
+/**
+ * Passes input events to a listener and main component. This is separate from GLGuiWindow so that the
+ * input path can be driven without display, for instance by the benchmarks. The targets are only
+ * references, so setTargets can be called before every dispatch without allocating anything.
+ */
+class GLInputDispatcher {
+	
+	private GuiComponent mainComponent;
+	private WindowListener listener;
+	private WindowInput input;
+	
+	/**
+	 * Sets the component that receives the events, the listener that can intercept them (may be null) and
+	 * the input that keeps track of the mouse buttons and keys that are down.
+	 */
+	void setTargets(GuiComponent mainComponent, WindowListener listener, WindowInput input) {
+		this.mainComponent = mainComponent;
+		this.listener = listener;
+		this.input = input;
+	}
+	
+	/**
+	 * Passes the events in the given buffer to the listener and main component, in the order they occurred.
+	 */
+	void dispatch(GLInputBuffer events) {
+		for (int index = 0; index < events.size(); index++) {
+			int type = events.getType(index);
+			if (type == GLInputBuffer.SCROLL)
+				processScroll(events.getCode(index));
+			else if (type == GLInputBuffer.BUTTON)
+				processButton(events.getCode(index), events.getSecond(index) != 0, events.getX(index), events.getY(index));
+			else
+				processKeyEvent(events.getCode(index), (char) events.getSecond(index), events.getThird(index) != 0);
+		}
+	}
+	
+	/**
+	 * Passes a single mouse event to the listener and main component. The x and y coordinates are relative
+	 * to the window.
+	 */
+	void processMouseEvent(int dWheel, int glButton, boolean buttonState, float x, float y) {
+		processScroll(dWheel);
+		processButton(glButton, buttonState, x, y);
+	}
+	
+	private void processScroll(int dWheel) {
+		float scroll = dWheel * 0.00025f;
+		//it appears that gl scrolling is 40 times more sensitive than awt scrolling
+		//I don't really like using magic numbers, but I don't have an alternative
+		if(scroll != 0){
+			if(listener != null)
+				scroll = listener.preScroll(scroll);
+			if(scroll != 0){
+				mainComponent.scroll(scroll);
+				if(listener != null)
+					listener.postScroll(scroll);
+			}
+		}
+	}
+	
+	private void processButton(int glButton, boolean buttonState, float x, float y) {
+		if(glButton != -1){
+			int button = GLMouseConverter.get(glButton);
+			if(buttonState)
+				input.setMouseDown(button);
+			else {// on release
+				if(listener == null || !listener.preClick(x, y, button)){
+					mainComponent.click(x, y, button);
+					if(listener != null)
+						listener.postClick(x, y, button);
+				}
+				input.setMouseUp(button);
+			}
+		}
+	}
+	
+	/**
+	 * Passes a single keyboard event to the listener and main component.
+	 */
+	void processKeyEvent(int glKey, char c, boolean keyState) {
+		//KeyEvent (awt) and Keyboard (lwjgl) use different key codes...
+		int codeCount = GLKeyConverter.getCodeCount(glKey);
+		if(keyState && c != Keyboard.CHAR_NONE && CharacterFilter.approve(c) && (listener == null || !listener.preKeyPressed(c))){
+			mainComponent.keyPressed(c);
+			if(listener != null)
+				listener.postKeyPressed(c);
+		}
+		for(int index = 0; index < codeCount; index++){
+			int code = GLKeyConverter.getCode(glKey, index);
+			if(keyState){
+				input.setKeyDown(code);
+				if(listener == null || !listener.preKeyPressed(code)){
+					mainComponent.keyPressed(code);
+					if(listener != null)
+						listener.postKeyPressed(code);
+				}
+			}
+			else {
+				if(listener == null || !listener.preKeyReleased(code)){
+					mainComponent.keyReleased(code);
+					if(listener != null)
+						listener.postKeyReleased(code);
+				}
+				input.setKeyUp(code);
+			}
+		}
+		//when state is false (keyRelease), the character is unknown
+	}
+}
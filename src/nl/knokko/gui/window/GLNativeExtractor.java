@@ -0,0 +1,286 @@
+/*******************************************************************************
+ * The MIT License
+ *
+ * Copyright (c) 2018 knokko
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *  
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *******************************************************************************/
+package nl.knokko.gui.window;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+import org.lwjgl.LWJGLUtil;
+
+/**
+ * Extracts the native libraries of lwjgl for the current platform to the .LWJGL/natives folder in the user
+ * home and lets lwjgl load them from there. The libraries are listed in natives/manifest.txt together with
+ * their size and SHA-256 checksum. Only the libraries of the current platform are extracted, libraries that
+ * are already present with the right checksum are left alone and missing or damaged libraries are replaced.
+ * The extraction runs on a background thread that is started by the GLGuiWindow constructor, so it overlaps
+ * with the setup of the window. Opening the window waits until it has finished.
+ */
+class GLNativeExtractor {
+	
+	private static final String MANIFEST = "natives/manifest.txt";
+	private static final int MANIFEST_VERSION = 1;
+	
+	private static final int TRANSFER_SIZE = 1024 * 1024;
+	
+	private static FutureTask<Void> extraction;
+	
+	/**
+	 * Starts extracting the native libraries on a background thread, unless that was already done by this JVM.
+	 * The library path of lwjgl will be set immediately.
+	 */
+	static synchronized void start(){
+		if (extraction != null)
+			return;
+		final String platformName = getPlatformName();
+		final File destFolder = new File(System.getProperty("user.home") + File.separator + ".LWJGL" 
+				+ File.separator + "natives" + File.separator + platformName);
+		System.setProperty("org.lwjgl.librarypath", destFolder.getAbsolutePath());
+		extraction = new FutureTask<Void>(new Callable<Void>() {
+
+			@Override
+			public Void call() throws IOException {
+				extract(platformName, destFolder);
+				return null;
+			}
+		});
+		Thread thread = new Thread(extraction, "GLGui natives extraction");
+		thread.setDaemon(true);
+		thread.start();
+	}
+	
+	/**
+	 * Waits until the native libraries have been extracted. If the extraction failed, a RuntimeException is
+	 * thrown and the next call will try again.
+	 */
+	static void await(){
+		FutureTask<Void> current;
+		synchronized (GLNativeExtractor.class) {
+			start();
+			current = extraction;
+		}
+		try {
+			current.get();
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted while extracting the native libraries of lwjgl", ex);
+		} catch (ExecutionException ex) {
+			synchronized (GLNativeExtractor.class) {
+				if (extraction == current)
+					extraction = null;
+			}
+			throw new RuntimeException("Failed to extract the native libraries of lwjgl to " 
+					+ System.getProperty("org.lwjgl.librarypath"), ex.getCause());
+		}
+	}
+	
+	private static String getPlatformName(){
+		String platformName = LWJGLUtil.getPlatformName();
+		if(platformName.equals(LWJGLUtil.PLATFORM_LINUX_NAME)){
+			String osName = System.getProperty("os.name");
+			if(osName.startsWith("FreeBSD"))
+				platformName = "freebsd";//I can't test this code, so I am not sure this works
+			else if(osName.startsWith("SunOS"))
+				platformName = "solaris";
+		}
+		return platformName;
+	}
+	
+	private static void extract(String platformName, final File destFolder) throws IOException {
+		List<Entry> entries = readManifest(platformName);
+		if (entries.isEmpty())
+			throw new IOException("There are no native libraries for platform " + platformName);
+		if (!destFolder.isDirectory() && !destFolder.mkdirs())
+			throw new IOException("Can't create the folder " + destFolder);
+		List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(entries.size());
+		for (final Entry entry : entries) {
+			tasks.add(new Callable<Void>() {
+
+				@Override
+				public Void call() throws IOException {
+					extractFile(entry, new File(destFolder, entry.fileName));
+					return null;
+				}
+			});
+		}
+		try {
+			for (Future<Void> future : ForkJoinPool.commonPool().invokeAll(tasks))
+				future.get();
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while extracting the native libraries", ex);
+		} catch (ExecutionException ex) {
+			if (ex.getCause() instanceof IOException)
+				throw (IOException) ex.getCause();
+			throw new IOException(ex.getCause());
+		}
+	}
+	
+	private static List<Entry> readManifest(String platformName) throws IOException {
+		InputStream input = GLNativeExtractor.class.getClassLoader().getResourceAsStream(MANIFEST);
+		if (input == null)
+			throw new IOException("Can't find " + MANIFEST);
+		BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+		try {
+			List<Entry> entries = new ArrayList<Entry>();
+			boolean hasVersion = false;
+			String line;
+			while ((line = reader.readLine()) != null) {
+				line = line.trim();
+				if (line.isEmpty() || line.startsWith("#"))
+					continue;
+				String[] parts = line.split(" ");
+				if (!hasVersion) {
+					if (parts.length != 2 || !parts[0].equals("version") || !parts[1].equals(Integer.toString(MANIFEST_VERSION)))
+						throw new IOException("Unsupported version of " + MANIFEST + ": " + line);
+					hasVersion = true;
+				} else {
+					if (parts.length != 3)
+						throw new IOException("Invalid line in " + MANIFEST + ": " + line);
+					String prefix = platformName + "/";
+					if (parts[2].startsWith(prefix))
+						entries.add(new Entry(parts[0], Long.parseLong(parts[1]), parts[2], parts[2].substring(prefix.length())));
+				}
+			}
+			return entries;
+		} finally {
+			reader.close();
+		}
+	}
+	
+	private static void extractFile(Entry entry, File target) throws IOException {
+		
+		// This is the common case after the first start, so it should be as cheap as possible
+		if (target.length() == entry.size && entry.checksum.equals(checksum(target)))
+			return;
+		
+		InputStream input = GLNativeExtractor.class.getClassLoader().getResourceAsStream("natives/" + entry.path);
+		if (input == null)
+			throw new IOException("Can't find the native library natives/" + entry.path);
+		
+		// Write to a unique temporary file first, so other processes never see a partial library
+		File temp = File.createTempFile(entry.fileName, ".tmp", target.getParentFile());
+		try {
+			MessageDigest digest = createDigest();
+			ReadableByteChannel source = Channels.newChannel(new DigestInputStream(input, digest));
+			FileOutputStream output = new FileOutputStream(temp);
+			long size = 0;
+			try {
+				FileChannel dest = output.getChannel();
+				long transferred;
+				while ((transferred = dest.transferFrom(source, size, TRANSFER_SIZE)) > 0)
+					size += transferred;
+			} finally {
+				output.close();
+				source.close();
+			}
+			String checksum = toHex(digest.digest());
+			if (size != entry.size || !checksum.equals(entry.checksum))
+				throw new IOException("The native library natives/" + entry.path + " is corrupt: expected " 
+						+ entry.size + " bytes with checksum " + entry.checksum + ", but got " + size 
+						+ " bytes with checksum " + checksum);
+			try {
+				Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException ex) {
+				Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+		} finally {
+			if (temp.exists())
+				temp.delete();
+		}
+	}
+	
+	private static String checksum(File file) throws IOException {
+		MessageDigest digest = createDigest();
+		FileInputStream input = new FileInputStream(file);
+		try {
+			FileChannel channel = input.getChannel();
+			ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+			while (channel.read(buffer) != -1) {
+				buffer.flip();
+				digest.update(buffer);
+				buffer.clear();
+			}
+		} finally {
+			input.close();
+		}
+		return toHex(digest.digest());
+	}
+	
+	private static MessageDigest createDigest(){
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException ex) {
+			
+			// Every Java platform is required to support SHA-256
+			throw new Error(ex);
+		}
+	}
+	
+	private static String toHex(byte[] bytes){
+		char[] result = new char[bytes.length * 2];
+		for (int index = 0; index < bytes.length; index++) {
+			result[2 * index] = Character.forDigit((bytes[index] >> 4) & 0xF, 16);
+			result[2 * index + 1] = Character.forDigit(bytes[index] & 0xF, 16);
+		}
+		return new String(result);
+	}
+	
+	private static class Entry {
+		
+		final String checksum;
+		final long size;
+		final String path;
+		final String fileName;
+		
+		Entry(String checksum, long size, String path, String fileName){
+			this.checksum = checksum;
+			this.size = size;
+			this.path = path;
+			this.fileName = fileName;
+		}
+	}
+}
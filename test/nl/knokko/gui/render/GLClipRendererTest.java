@@ -0,0 +1,114 @@
+/*******************************************************************************
+ * The MIT License
+ *
+ * Copyright (c) 2018 knokko
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *  
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *******************************************************************************/
+package nl.knokko.gui.render;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import nl.knokko.gui.color.GuiColor;
+import nl.knokko.gui.color.SimpleGuiColor;
+import nl.knokko.gui.texture.loader.SoftwareGuiTextureLoader;
+
+public class GLClipRendererTest {
+	
+	private static final GuiColor RED = new SimpleGuiColor(255, 0, 0, 255);
+	private static final GuiColor BLUE = new SimpleGuiColor(0, 0, 255, 255);
+	
+	private static final int ARGB_RED = 0xFFFF0000;
+	private static final int ARGB_BLUE = 0xFF0000FF;
+	
+	/**
+	 * Clears the whole renderer with red and then the given area of it with blue.
+	 */
+	private static SoftwareGuiRenderer clearArea(boolean parallel, float minX, float minY, float maxX, float maxY) {
+		SoftwareGuiRenderer renderer = new SoftwareGuiRenderer(new SoftwareGuiTextureLoader(), 100, 80);
+		renderer.setParallel(parallel);
+		renderer.clear(RED);
+		renderer.getArea(minX, minY, maxX, maxY).clear(BLUE);
+		renderer.maybeRenderNow();
+		return renderer;
+	}
+	
+	/**
+	 * Checks that the pixels in the given rectangle are blue and all other pixels are red. The rectangle is in
+	 * pixels, with the rows counted from the top.
+	 */
+	private static void assertBlueRectangle(SoftwareGuiRenderer renderer, int left, int top, int right, int bottom) {
+		int[] pixels = renderer.getPixels();
+		for (int row = 0; row < renderer.getHeight(); row++) {
+			for (int column = 0; column < renderer.getWidth(); column++) {
+				boolean inside = column >= left && column < right && row >= top && row < bottom;
+				assertEquals("pixel (" + column + ", " + row + ")", inside ? ARGB_BLUE : ARGB_RED, 
+						pixels[row * renderer.getWidth() + column]);
+			}
+		}
+	}
+	
+	@Test
+	public void testClearArea() {
+		
+		// The area is the right half of the bottom quarter: the bottom quarter has the last 20 rows
+		assertBlueRectangle(clearArea(false, 0.5f, 0f, 1f, 0.25f), 50, 60, 100, 80);
+	}
+	
+	@Test
+	public void testClearAreaParallel() {
+		
+		// The bands of the parallel mode must respect the clip rectangle as well
+		assertBlueRectangle(clearArea(true, 0.25f, 0.25f, 0.75f, 0.75f), 25, 20, 75, 60);
+	}
+	
+	@Test
+	public void testClearNestedArea() {
+		SoftwareGuiRenderer renderer = new SoftwareGuiRenderer(new SoftwareGuiTextureLoader(), 100, 80);
+		renderer.clear(RED);
+		
+		// The inner area sticks out of the outer area, so only the overlap can be cleared
+		renderer.getArea(0f, 0f, 0.5f, 0.5f).getArea(0.5f, 0.5f, 1.5f, 1.5f).clear(BLUE);
+		renderer.maybeRenderNow();
+		assertBlueRectangle(renderer, 25, 40, 50, 60);
+	}
+	
+	@Test
+	public void testClearInvisibleArea() {
+		SoftwareGuiRenderer renderer = new SoftwareGuiRenderer(new SoftwareGuiTextureLoader(), 100, 80);
+		renderer.clear(RED);
+		renderer.getArea(0f, 0f, 0.5f, 0.5f).getArea(1f, 1f, 2f, 2f).clear(BLUE);
+		renderer.maybeRenderNow();
+		assertBlueRectangle(renderer, 0, 0, 0, 0);
+	}
+	
+	@Test
+	public void testFillAfterClearArea() {
+		SoftwareGuiRenderer renderer = new SoftwareGuiRenderer(new SoftwareGuiTextureLoader(), 100, 80);
+		renderer.clear(RED);
+		renderer.getArea(0f, 0f, 0.5f, 0.5f).clear(RED);
+		
+		// The clip of the area must end after its clear
+		renderer.fill(BLUE, 0.5f, 0.5f, 1f, 1f);
+		renderer.maybeRenderNow();
+		assertBlueRectangle(renderer, 50, 0, 100, 40);
+	}
+}
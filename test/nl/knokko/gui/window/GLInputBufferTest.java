@@ -0,0 +1,147 @@
+/*******************************************************************************
+ * The MIT License
+ *
+ * Copyright (c) 2018 knokko
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *  
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *******************************************************************************/
+package nl.knokko.gui.window;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.lang.management.ManagementFactory;
+
+import org.junit.Test;
+import org.lwjgl.input.Keyboard;
+
+import nl.knokko.gui.component.GuiComponent;
+import nl.knokko.gui.render.GuiRenderer;
+import nl.knokko.gui.window.input.WindowInput;
+
+public class GLInputBufferTest {
+	
+	private static final int CYCLES = 1000;
+	private static final int WARMUP_ROUNDS = 50;
+	
+	/**
+	 * Does the same as one poll of GLGuiWindow followed by a dispatch: a scroll that is merged with the next
+	 * one, a mouse click, some movement and a key that is pressed and released.
+	 */
+	private static void pollAndDispatch(GLInputBuffer buffer, GLInputDispatcher dispatcher, int cycle) {
+		buffer.setState(400, 300, true, 800, 600);
+		buffer.addScroll(120);
+		buffer.addScroll(-240);
+		buffer.addMotion(3, -2);
+		buffer.addButton(0, true, 0.5f, 0.5f);
+		buffer.addButton(0, false, 0.5f, 0.5f);
+		buffer.addMotion(-1, 4);
+		buffer.addKey(Keyboard.KEY_A + cycle % 10, (char) ('a' + cycle % 10), true);
+		buffer.addKey(Keyboard.KEY_A + cycle % 10, (char) Keyboard.CHAR_NONE, false);
+		dispatcher.dispatch(buffer);
+		buffer.clear();
+	}
+	
+	private static void pollAndDispatch(GLInputBuffer buffer, GLInputDispatcher dispatcher) {
+		for (int cycle = 0; cycle < CYCLES; cycle++)
+			pollAndDispatch(buffer, dispatcher, cycle);
+	}
+	
+	@Test
+	public void testDispatch() {
+		CountingComponent component = new CountingComponent();
+		GLInputDispatcher dispatcher = new GLInputDispatcher();
+		dispatcher.setTargets(component, null, new WindowInput());
+		pollAndDispatch(new GLInputBuffer(), dispatcher, 0);
+		assertEquals(1, component.scrolls);
+		assertEquals(1, component.clicks);
+		assertEquals(1, component.characters);
+		assertTrue(component.keyPresses > 0);
+		assertEquals(component.keyPresses, component.keyReleases);
+	}
+	
+	@Test
+	public void testPollAndDispatchDontAllocate() {
+		java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		assumeTrue("The allocated bytes of threads can't be measured on this JVM", 
+				threads instanceof com.sun.management.ThreadMXBean);
+		com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) threads;
+		assumeTrue("The allocated bytes of threads can't be measured on this JVM", 
+				allocations.isThreadAllocatedMemorySupported());
+		allocations.setThreadAllocatedMemoryEnabled(true);
+		long thread = Thread.currentThread().getId();
+		
+		GLInputBuffer buffer = new GLInputBuffer();
+		GLInputDispatcher dispatcher = new GLInputDispatcher();
+		dispatcher.setTargets(new CountingComponent(), null, new WindowInput());
+		
+		// Let the classes initialize, the arrays of the buffer grow and the JIT compile the code before measuring
+		for (int round = 0; round < WARMUP_ROUNDS; round++)
+			pollAndDispatch(buffer, dispatcher);
+		
+		// Reading the allocated bytes can allocate itself on some JVMs, so measure that too
+		long before = allocations.getThreadAllocatedBytes(thread);
+		long overhead = allocations.getThreadAllocatedBytes(thread) - before;
+		before += overhead;
+		pollAndDispatch(buffer, dispatcher);
+		long after = allocations.getThreadAllocatedBytes(thread);
+		assertEquals("allocated bytes", 0, after - before - overhead);
+	}
+	
+	private static class CountingComponent implements GuiComponent {
+		
+		int scrolls;
+		int clicks;
+		int characters;
+		int keyPresses;
+		int keyReleases;
+
+		@Override
+		public void render(GuiRenderer renderer) {}
+
+		@Override
+		public void scroll(float amount) {
+			scrolls++;
+		}
+
+		@Override
+		public void click(float x, float y, int button) {
+			clicks++;
+		}
+
+		@Override
+		public void keyPressed(char character) {
+			characters++;
+		}
+
+		@Override
+		public void keyPressed(int keyCode) {
+			keyPresses++;
+		}
+
+		@Override
+		public void keyReleased(int keyCode) {
+			keyReleases++;
+		}
+
+		@Override
+		public void update() {}
+	}
+}